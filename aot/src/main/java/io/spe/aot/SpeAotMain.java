@@ -0,0 +1,82 @@
+package io.spe.aot;
+
+import io.spe.Precompile;
+import io.spe.SpeAot;
+import io.spe.SpeOptions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Precompiles the implementations annotated with {@link Precompile} found in class directories,
+ * which must be on the class path along with their dependencies.
+ * <p>
+ * Usage: {@code [--host-cpu] [--optimization-level O0|O1|O2|O3] <output> <classes>...}
+ * <p>
+ * Code targets a generic CPU of the architecture of the build unless {@code --host-cpu} is given.
+ */
+public final class SpeAotMain {
+    private SpeAotMain() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        final SpeOptions.Builder options = SpeOptions.builder().hostCpu(false);
+        final List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--host-cpu" -> options.hostCpu(true);
+                case "--optimization-level" -> {
+                    if (++i == args.length) throw new IllegalArgumentException("Missing optimization level");
+                    options.optimizationLevel(SpeOptions.OptimizationLevel.valueOf(args[i]));
+                }
+                default -> paths.add(Path.of(args[i]));
+            }
+        }
+        if (paths.size() < 2) {
+            throw new IllegalArgumentException("Usage: [--host-cpu] [--optimization-level O0|O1|O2|O3] <output> <classes>...");
+        }
+
+        final Map<Class<?>, Class<?>> implementations = new HashMap<>();
+        for (Path classes : paths.subList(1, paths.size())) {
+            for (Class<?> type : classes(classes)) {
+                final Precompile precompile = type.getAnnotation(Precompile.class);
+                if (precompile == null) continue;
+                final Class<?> previous = implementations.put(precompile.value(), type);
+                if (previous != null) {
+                    throw new IllegalArgumentException(precompile.value() + " is implemented by both " + previous + " and " + type);
+                }
+            }
+        }
+        if (implementations.isEmpty()) return;
+        SpeAot.precompile(implementations, paths.get(0), options.build());
+        System.out.println("Precompiled " + implementations.size() + " implementations to " + paths.get(0));
+    }
+
+    /**
+     * Loads the classes of a directory without initializing them.
+     */
+    private static List<Class<?>> classes(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return List.of();
+        final ClassLoader loader = SpeAotMain.class.getClassLoader();
+        final List<Class<?>> classes = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.filter(path -> path.toString().endsWith(".class")).toList()) {
+                final String path = directory.relativize(file).toString();
+                final String name = path.substring(0, path.length() - ".class".length()).replace(file.getFileSystem().getSeparator(), ".");
+                if (name.endsWith("module-info") || name.endsWith("package-info")) continue;
+                try {
+                    classes.add(Class.forName(name, false, loader));
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalArgumentException(directory + " is not on the class path", e);
+                }
+            }
+        }
+        return classes;
+    }
+}
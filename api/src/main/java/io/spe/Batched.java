@@ -0,0 +1,16 @@
+package io.spe;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Requests a batched variant of an interface method, looping natively over many argument tuples.
+ *
+ * @see SpeFactory#batch(String)
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Batched {
+}
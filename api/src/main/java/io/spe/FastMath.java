@@ -0,0 +1,56 @@
+package io.spe;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Relaxes the floating-point semantics of an implementation class or method, letting LLVM contract operations
+ * into FMA, reassociate reductions and vectorize them.
+ * <p>
+ * The flags apply to arithmetic, negations and comparisons, scalar or lanewise, and to the calls of {@link Math}
+ * functions. Under {@link Flag#NNAN} and {@link Flag#NSZ}, {@code Math.min} and {@code Math.max} become
+ * {@code llvm.minnum} and {@code llvm.maxnum}.
+ * <p>
+ * Results may differ from the Java implementation, which stays strict. A method annotation overrides the class one.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface FastMath {
+    Flag[] value() default {Flag.REASSOC, Flag.CONTRACT, Flag.NNAN, Flag.NINF, Flag.NSZ, Flag.ARCP, Flag.AFN};
+
+    /**
+     * LLVM fast-math flags.
+     */
+    enum Flag {
+        /**
+         * Allows reassociation, required to vectorize reductions.
+         */
+        REASSOC,
+        /**
+         * Allows fusing a multiplication and an addition.
+         */
+        CONTRACT,
+        /**
+         * Assumes that arguments and results are not NaN.
+         */
+        NNAN,
+        /**
+         * Assumes that arguments and results are not infinite.
+         */
+        NINF,
+        /**
+         * Ignores the sign of zero.
+         */
+        NSZ,
+        /**
+         * Allows replacing a division by a multiplication with the reciprocal.
+         */
+        ARCP,
+        /**
+         * Allows approximating functions.
+         */
+        AFN
+    }
+}
@@ -0,0 +1,17 @@
+package io.spe;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a static method of an implementation that stays in Java, compiled code calling it back through an upcall.
+ * <p>
+ * Meant for rare slow paths such as logging or fallbacks: every call crosses back into the JVM.
+ * The method only accepts and returns primitives, must not be overloaded, and must not throw.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface JavaCallback {
+}
@@ -0,0 +1,19 @@
+package io.spe;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an implementation to compile ahead of time into a shared library, bound to by the compiler at runtime
+ * instead of compiling it again.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Precompile {
+    /**
+     * The interface compiled, implemented by the annotated class.
+     */
+    Class<?> value();
+}
@@ -2,10 +2,36 @@ package io.spe;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Map;
+
 public interface SpeAccess {
     <T> @NotNull T compileAndCreate(@NotNull Class<T> interfaceType, @NotNull Class<? extends T> implementationType);
 
+    <T> @NotNull T compileAndCreate(@NotNull Class<T> interfaceType, @NotNull Class<? extends T> implementationType, @NotNull SpeOptions options);
+
     <T> @NotNull SpeFactory<T> compile(@NotNull Class<T> interfaceType, @NotNull Class<? extends T> implementationType);
 
+    <T> @NotNull SpeFactory<T> compile(@NotNull Class<T> interfaceType, @NotNull Class<? extends T> implementationType, @NotNull SpeOptions options);
+
+    <T> @NotNull T compileAndCreate(@NotNull Class<T> interfaceType, @NotNull T implementation);
+
+    <T> @NotNull T compileAndCreate(@NotNull Class<T> interfaceType, @NotNull T implementation, @NotNull SpeOptions options);
+
+    <T> @NotNull SpeFactory<T> compile(@NotNull Class<T> interfaceType, @NotNull T implementation);
+
+    <T> @NotNull SpeFactory<T> compile(@NotNull Class<T> interfaceType, @NotNull T implementation, @NotNull SpeOptions options);
+
+    <T> @NotNull SpeTieredFactory<T> compileTiered(@NotNull Class<T> interfaceType, @NotNull Class<? extends T> implementationType);
+
+    <T> @NotNull SpeTieredFactory<T> compileTiered(@NotNull Class<T> interfaceType, @NotNull Class<? extends T> implementationType, @NotNull SpeOptions options);
+
+    <T> @NotNull SpeVerification verify(@NotNull Class<T> interfaceType, @NotNull Class<? extends T> implementationType, long cases);
+
+    <T> @NotNull SpeVerification verify(@NotNull Class<T> interfaceType, @NotNull Class<? extends T> implementationType, long cases, @NotNull SpeOptions options);
+
+    @NotNull Map<Class<?>, SpeFactory<?>> compileAll(@NotNull Map<Class<?>, Class<?>> implementations);
+
+    @NotNull Map<Class<?>, SpeFactory<?>> compileAll(@NotNull Map<Class<?>, Class<?>> implementations, @NotNull SpeOptions options);
+
     void free();
 }
@@ -0,0 +1,31 @@
+package io.spe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Batched form of a {@link Batched} method, crossing the native boundary once for {@code count} calls.
+ * <p>
+ * Arguments are read from consecutive {@link #inputLayout()} tuples, and each result is written
+ * to consecutive {@link #outputLayout()} values.
+ */
+public interface SpeBatch {
+    /**
+     * Gets the layout of one tuple of arguments, laid out as a C struct.
+     */
+    @NotNull MemoryLayout inputLayout();
+
+    /**
+     * Gets the layout of one result.
+     */
+    @NotNull MemoryLayout outputLayout();
+
+    /**
+     * Runs the method on the first {@code count} tuples of {@code input}, storing the results in {@code output}.
+     *
+     * @throws ArithmeticException if a tuple divides an integer by zero, the results before it being stored
+     */
+    void invoke(@NotNull MemorySegment input, @NotNull MemorySegment output, long count);
+}
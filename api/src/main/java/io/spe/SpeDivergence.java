@@ -0,0 +1,38 @@
+package io.spe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sampled call on which the native code disagreed with the Java implementation.
+ *
+ * @param arguments the arguments before the call
+ * @param expected  the result of the Java implementation, or its array arguments after the call if only they differ
+ * @param actual    the result of the native code, or its array arguments after the call if only they differ
+ * @param count     the number of divergences of the method so far, this one included
+ */
+public record SpeDivergence(@NotNull Method method, @NotNull List<Object> arguments,
+                            @Nullable Object expected, @Nullable Object actual, long count) {
+    @Override
+    public String toString() {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName() + Arrays.deepToString(arguments.toArray()) +
+                ": expected " + format(expected) + " but was " + format(actual) + " (" + count + " divergences)";
+    }
+
+    private static String format(Object value) {
+        final String wrapped = Arrays.deepToString(new Object[]{value});
+        return wrapped.substring(1, wrapped.length() - 1);
+    }
+
+    /**
+     * Called on the thread of the diverging call, which returns the native result afterward.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onDivergence(@NotNull SpeDivergence divergence);
+    }
+}
@@ -2,6 +2,64 @@ package io.spe;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.lang.foreign.MemorySegment;
+import java.util.function.BinaryOperator;
+
 public interface SpeFactory<T> {
     @NotNull T create();
+
+    /**
+     * Gets the batched form of a method annotated with {@link Batched}.
+     *
+     * @throws IllegalArgumentException if no such method is batched
+     */
+    @NotNull SpeBatch batch(@NotNull String methodName);
+
+    /**
+     * Gets the native memory of a static field of the implementation, accessed by the compiled code.
+     * <p>
+     * Static fields are copied from the Java class at compilation and are independent of it afterward.
+     * Identical compilations share their code, so the factories of the same implementation compiled with the same options
+     * and static field values share these fields: a write through one factory, or a call of its instances, is seen by the others.
+     * The segment covers the value of a primitive field or the elements of an array, and can be accessed
+     * atomically through the var handles of {@link java.lang.foreign.ValueLayout}. It is closed once the code is unloaded.
+     *
+     * @throws IllegalArgumentException if the compiled code does not use such a mutable static field
+     */
+    @NotNull MemorySegment staticField(@NotNull String name);
+
+    /**
+     * Runs {@code body} over chunks covering {@code [start, end)} in parallel on the common fork-join pool,
+     * each chunk calling the native code of a shared instance.
+     * <p>
+     * Chunks hold a multiple of {@code grain} indices, except the last one, and are large enough for each worker
+     * to get a few of them. A grain covering whole cache lines keeps workers from writing to the same lines.
+     *
+     * @throws IllegalArgumentException if {@code grain} is not positive or {@code start} is after {@code end}
+     */
+    void parallelFor(long start, long end, long grain, @NotNull RangeBody<T> body);
+
+    /**
+     * Same as {@link #parallelFor(long, long, long, RangeBody)}, combining the result of each chunk
+     * with the one of the next chunk. An empty range is a single empty chunk.
+     */
+    <R> R parallelReduce(long start, long end, long grain,
+                         @NotNull RangeFunction<T, R> body, @NotNull BinaryOperator<R> combiner);
+
+    /**
+     * Releases the native code of this factory, the instances it created must no longer be used.
+     * <p>
+     * The code is unloaded once every factory of an identical compilation has been freed.
+     */
+    void free();
+
+    @FunctionalInterface
+    interface RangeBody<T> {
+        void run(@NotNull T instance, long start, long end);
+    }
+
+    @FunctionalInterface
+    interface RangeFunction<T, R> {
+        R apply(@NotNull T instance, long start, long end);
+    }
 }
@@ -0,0 +1,23 @@
+package io.spe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+
+/**
+ * Calls to the native code of a factory compiled with {@link SpeOptions#metrics()}, registered in the platform
+ * MBean server as {@code io.spe:type=Factory,interface=<name>,id=<n>} until the factory is freed.
+ * <p>
+ * Methods are keyed by their name followed by their parameter types, {@code add(int, int)} for example.
+ */
+public interface SpeMetricsMXBean {
+    @NotNull String getInterfaceName();
+
+    @NotNull Map<String, Long> getCallCounts();
+
+    /**
+     * Gets the latency histogram of every method from a sample of its calls,
+     * bucket {@code i} counting the calls lasting from {@code 2^i} to {@code 2^(i+1)} nanoseconds.
+     */
+    @NotNull Map<String, long[]> getLatencyHistograms();
+}
@@ -0,0 +1,129 @@
+package io.spe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Settings used to compile an implementation.
+ *
+ * @param optimizationLevel  the optimization pipeline to run
+ * @param hostCpu            true to tune the code for the CPU and features of the current machine,
+ *                           false to target a generic CPU of the same architecture.
+ *                           Ignored by precompiled code, which targets the CPU chosen when it was built
+ * @param shadowSampleRate   one in how many calls also runs the Java implementation to compare the results, 0 to never do it
+ * @param divergenceListener notified of the sampled calls whose results differ, present if {@code shadowSampleRate} is positive
+ * @param metrics            true to count the calls of every method and time a sample of them,
+ *                           see {@link SpeMetricsMXBean}
+ * @param dumps              the directory of every kind of file to write while compiling, nothing being written by default
+ */
+public record SpeOptions(@NotNull OptimizationLevel optimizationLevel, boolean hostCpu,
+                         int shadowSampleRate, @Nullable SpeDivergence.Listener divergenceListener, boolean metrics,
+                         @NotNull Map<Dump, Path> dumps) {
+    private static final SpeOptions DEFAULT = builder().build();
+
+    public SpeOptions {
+        Objects.requireNonNull(optimizationLevel, "optimizationLevel");
+        if (shadowSampleRate < 0) throw new IllegalArgumentException("Negative sample rate: " + shadowSampleRate);
+        if (shadowSampleRate > 0) Objects.requireNonNull(divergenceListener, "divergenceListener");
+        dumps = Map.copyOf(dumps);
+    }
+
+    public static @NotNull SpeOptions defaults() {
+        return DEFAULT;
+    }
+
+    public static @NotNull Builder builder() {
+        return new Builder();
+    }
+
+    public enum OptimizationLevel {
+        O0, O1, O2, O3
+    }
+
+    /**
+     * Kind of file written while compiling an implementation, named after its cache key and class.
+     * Nothing is written for code loaded from the cache.
+     */
+    public enum Dump {
+        /**
+         * Textual IR before optimization and verification, {@code .ll}.
+         */
+        IR,
+        /**
+         * Textual IR after optimization, {@code .opt.ll}.
+         */
+        OPTIMIZED_IR,
+        /**
+         * Assembly of the machine code, {@code .s}.
+         */
+        ASSEMBLY,
+        /**
+         * Object file loaded in the JIT, {@code .o}.
+         */
+        OBJECT,
+        /**
+         * Every bytecode instruction of the compiled methods followed by the IR emitted for it, {@code .map}.
+         */
+        BYTECODE_MAP
+    }
+
+    public static final class Builder {
+        private OptimizationLevel optimizationLevel = OptimizationLevel.O2;
+        private boolean hostCpu = true;
+        private int shadowSampleRate;
+        private SpeDivergence.Listener divergenceListener;
+        private boolean metrics;
+        private final Map<Dump, Path> dumps = new EnumMap<>(Dump.class);
+
+        private Builder() {
+        }
+
+        public @NotNull Builder optimizationLevel(@NotNull OptimizationLevel optimizationLevel) {
+            this.optimizationLevel = optimizationLevel;
+            return this;
+        }
+
+        /**
+         * Tunes the code for the current machine, or for a generic CPU. Code precompiled by {@code SpeAot} is bound to
+         * whatever this is, its key leaving the CPU out so that it can be checked without loading LLVM.
+         */
+        public @NotNull Builder hostCpu(boolean hostCpu) {
+            this.hostCpu = hostCpu;
+            return this;
+        }
+
+        /**
+         * Runs the Java implementation along the native code on one in {@code sampleRate} calls,
+         * reporting the calls whose results differ. Instances share a Java instance, so implementations
+         * keeping state across calls are expected to diverge. A sampled call throws what the Java implementation
+         * throws, without running the native code. Methods taking segments are never sampled.
+         */
+        public @NotNull Builder shadow(int sampleRate, @NotNull SpeDivergence.Listener listener) {
+            this.shadowSampleRate = sampleRate;
+            this.divergenceListener = listener;
+            return this;
+        }
+
+        public @NotNull Builder metrics(boolean metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Writes the files of {@code kind} to {@code directory}, created if missing.
+         */
+        public @NotNull Builder dump(@NotNull Dump kind, @NotNull Path directory) {
+            this.dumps.put(kind, directory);
+            return this;
+        }
+
+        public @NotNull SpeOptions build() {
+            return new SpeOptions(optimizationLevel, hostCpu, shadowSampleRate, divergenceListener, metrics, dumps);
+        }
+    }
+}
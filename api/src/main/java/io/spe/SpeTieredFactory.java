@@ -0,0 +1,22 @@
+package io.spe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Factory whose instances run the Java implementation while the native code compiles in the background,
+ * and switch to it once linked.
+ */
+public interface SpeTieredFactory<T> {
+    /**
+     * Creates an instance, running native code once {@link #nativeFactory()} has completed.
+     */
+    @NotNull T create();
+
+    /**
+     * Completes once every instance runs native code, or exceptionally if the compilation failed,
+     * in which case instances keep running the Java implementation.
+     */
+    @NotNull CompletableFuture<SpeFactory<T>> nativeFactory();
+}
@@ -0,0 +1,47 @@
+package io.spe;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Result of running the native code and the Java implementation on the same inputs.
+ *
+ * @param cases      the number of inputs run on both sides
+ * @param mismatches the first mismatch of every method that failed
+ * @param skipped    the methods whose parameters cannot be generated, segments for example
+ */
+public record SpeVerification(long cases, @NotNull List<Mismatch> mismatches, @NotNull List<Method> skipped) {
+    public SpeVerification {
+        mismatches = List.copyOf(mismatches);
+        skipped = List.copyOf(skipped);
+    }
+
+    public boolean passed() {
+        return mismatches.isEmpty();
+    }
+
+    /**
+     * Input on which a method disagrees, shrunk to the simplest one still failing.
+     *
+     * @param expected the result of the Java implementation, or its array arguments after the call if only they differ
+     * @param actual   the result of the native code, or its array arguments after the call if only they differ
+     * @param failures the number of failing inputs of the method
+     */
+    public record Mismatch(@NotNull Method method, @NotNull List<Object> arguments,
+                           @Nullable Object expected, @Nullable Object actual, long failures) {
+        @Override
+        public String toString() {
+            return method.getDeclaringClass().getSimpleName() + "." + method.getName() + Arrays.deepToString(arguments.toArray()) +
+                    ": expected " + format(expected) + " but was " + format(actual) + " (" + failures + " failures)";
+        }
+
+        private static String format(Object value) {
+            final String wrapped = Arrays.deepToString(new Object[]{value});
+            return wrapped.substring(1, wrapped.length() - 1);
+        }
+    }
+}
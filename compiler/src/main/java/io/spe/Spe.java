@@ -1,126 +1,503 @@
 package io.spe;
 
-import io.spe.compiler.SpeCompiler;
-import org.bytedeco.javacpp.BytePointer;
-import org.bytedeco.javacpp.LongPointer;
-import org.bytedeco.llvm.LLVM.*;
+import io.spe.compiler.SpeStatus;
+import io.spe.compiler.SpeSymbols;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.IOException;
 import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.MemoryAddress;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.MemorySession;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BinaryOperator;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
 
-import static org.bytedeco.llvm.global.LLVM.*;
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
 
 public final class Spe {
-    private static final Map<Class<?>, FactoryImpl<?>> FACTORIES = new ConcurrentHashMap<>();
-    // a 'char *' used to retrieve error messages from LLVM
-    private static final BytePointer error = new BytePointer();
-    public static LLVMErrorRef err = null;
-
-    static {
-        // Initialize LLVM components
-        LLVMInitializeCore(LLVMGetGlobalPassRegistry());
-        LLVMLinkInMCJIT();
-        LLVMInitializeNativeAsmPrinter();
-        LLVMInitializeNativeAsmParser();
-        LLVMInitializeNativeTarget();
-    }
+    // Loaded object files by cache key, shared by the factories of identical compilations
+    private static final Map<String, Loaded> LOADED = new HashMap<>();
+    // Whether the JIT may have been created, LLVM not being loaded by precompiled code alone
+    private static boolean jit;
 
     public static synchronized void free() {
-        FACTORIES.forEach((aClass, speFactory) -> LLVMOrcDisposeLLJIT(speFactory.jit()));
-        FACTORIES.clear();
+        for (Loaded loaded : LOADED.values()) loaded.session.close();
+        LOADED.clear();
+        if (jit) SpeJit.dispose();
+        jit = false;
     }
 
     public static <T> @NotNull T compileAndCreate(Class<T> interfaceType, Class<? extends T> implementationType) {
-        final SpeFactory<T> factory = compile(interfaceType, implementationType);
+        return compileAndCreate(interfaceType, implementationType, SpeOptions.defaults());
+    }
+
+    public static <T> @NotNull T compileAndCreate(Class<T> interfaceType, Class<? extends T> implementationType, SpeOptions options) {
+        final SpeFactory<T> factory = compile(interfaceType, implementationType, options);
         return factory.create();
     }
 
     public static <T> @NotNull SpeFactory<T> compile(Class<T> interfaceType, Class<? extends T> implementationType) {
-        LLVMModuleRef module = LLVMModuleCreateWithName(implementationType.getSimpleName());
-        LLVMBuilderRef builder = LLVMCreateBuilder();
+        return compile(interfaceType, implementationType, SpeOptions.defaults());
+    }
+
+    /**
+     * Compiles an implementation, or binds to its compilation by {@link SpeAot} if one is packaged with it
+     * at the same optimization level and no dump is requested. Precompiled code targets the CPU chosen at build time,
+     * whatever {@link SpeOptions#hostCpu()} is.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> @NotNull SpeFactory<T> compile(Class<T> interfaceType, Class<? extends T> implementationType, SpeOptions options) {
+        final Unit unit = Unit.of(interfaceType, implementationType, null, options);
+        final FactoryImpl<?> loaded = acquire(unit);
+        if (loaded != null) return (SpeFactory<T>) loaded;
+        return (SpeFactory<T>) load(unit, unit.object());
+    }
+
+    public static <T> @NotNull T compileAndCreate(Class<T> interfaceType, T implementation) {
+        return compileAndCreate(interfaceType, implementation, SpeOptions.defaults());
+    }
+
+    public static <T> @NotNull T compileAndCreate(Class<T> interfaceType, T implementation, SpeOptions options) {
+        final SpeFactory<T> factory = compile(interfaceType, implementation, options);
+        return factory.create();
+    }
 
-        final List<Method> affectedMethods = Arrays.stream(interfaceType.getMethods()).filter(method -> (method.getModifiers() & Modifier.ABSTRACT) != 0).toList();
+    public static <T> @NotNull SpeFactory<T> compile(Class<T> interfaceType, T implementation) {
+        return compile(interfaceType, implementation, SpeOptions.defaults());
+    }
+
+    /**
+     * Compiles an implementation specialized for its configuration, the final fields of {@code implementation}
+     * being folded into the native code. Each distinct configuration is compiled once.
+     * <p>
+     * Arrays that the implementation may write are copied into the native code instead of being folded.
+     * Writes go to that copy, which is shared by the factories of the same configuration,
+     * and never reach the arrays of {@code implementation}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> @NotNull SpeFactory<T> compile(Class<T> interfaceType, T implementation, SpeOptions options) {
+        final Unit unit = Unit.of(interfaceType, implementation.getClass(), implementation, options);
+        final FactoryImpl<?> loaded = acquire(unit);
+        if (loaded != null) return (SpeFactory<T>) loaded;
+        return (SpeFactory<T>) load(unit, unit.object());
+    }
+
+    public static <T> @NotNull SpeTieredFactory<T> compileTiered(Class<T> interfaceType, Class<? extends T> implementationType) {
+        return compileTiered(interfaceType, implementationType, SpeOptions.defaults());
+    }
+
+    /**
+     * Compiles an implementation in the background, its instances running the Java implementation in the meantime.
+     * <p>
+     * Compilations run on daemon threads of their own, at most one per processor.
+     */
+    public static <T> @NotNull SpeTieredFactory<T> compileTiered(Class<T> interfaceType, Class<? extends T> implementationType, SpeOptions options) {
+        final CompletableFuture<SpeFactory<T>> compilation = CompletableFuture.supplyAsync(
+                () -> compile(interfaceType, implementationType, options), SpeTiered.EXECUTOR);
+        return SpeTiered.create(interfaceType, implementationType, compilation);
+    }
+
+    public static <T> @NotNull SpeVerification verify(Class<T> interfaceType, Class<? extends T> implementationType, long cases) {
+        return verify(interfaceType, implementationType, cases, SpeOptions.defaults());
+    }
+
+    /**
+     * Runs every method of the native code and of a new Java instance on the same random and boundary inputs,
+     * reporting the simplest failing input of each method.
+     * <p>
+     * Inputs on which the Java implementation throws are not run natively, native code only checking integer divisions.
+     * Implementations keeping state across calls, in static fields for example, are expected to diverge.
+     * <p>
+     * Methods taking a {@code MemorySegment}, or any parameter other than primitives, primitive arrays and records of
+     * primitives, are not run and are listed in {@link SpeVerification#skipped()}.
+     * <p>
+     * Inputs are generated boxed and passed through reflective handles: expect in the order of a million cases a second
+     * on scalar methods, the native call being a small part of it.
+     *
+     * @param cases the number of inputs per method
+     */
+    public static <T> @NotNull SpeVerification verify(Class<T> interfaceType, Class<? extends T> implementationType, long cases, SpeOptions options) {
+        final T javaInstance;
+        try {
+            final var constructor = implementationType.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            javaInstance = constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create " + implementationType.getName(), e);
+        }
+        final SpeFactory<T> factory = compile(interfaceType, implementationType, options);
         try {
-            SpeCompiler.compile(module, builder, implementationType, affectedMethods);
-        } catch (IOException e) {
+            return SpeVerifier.verify(interfaceType, javaInstance, factory.create(), cases);
+        } finally {
+            factory.free();
+        }
+    }
+
+    public static @NotNull Map<Class<?>, SpeFactory<?>> compileAll(Map<Class<?>, Class<?>> implementations) {
+        return compileAll(implementations, SpeOptions.defaults());
+    }
+
+    /**
+     * Compiles many implementations at once, each in its own LLVM context on a pool bounded by the number of cores.
+     *
+     * @param implementations the implementation of every interface
+     * @return the factory of every interface
+     */
+    public static @NotNull Map<Class<?>, SpeFactory<?>> compileAll(Map<Class<?>, Class<?>> implementations, SpeOptions options) {
+        final Map<Class<?>, SpeFactory<?>> factories = new HashMap<>();
+        final List<Unit> units = new ArrayList<>();
+        for (var entry : implementations.entrySet()) {
+            final Unit unit = Unit.of(entry.getKey(), entry.getValue(), null, options);
+            final FactoryImpl<?> loaded = acquire(unit);
+            if (loaded != null) factories.put(unit.interfaceType(), loaded);
+            else units.add(unit);
+        }
+        if (units.isEmpty()) return Collections.unmodifiableMap(factories);
+
+        final int threads = Math.min(units.size(), Runtime.getRuntime().availableProcessors());
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<byte[]>> futures = units.stream().map(unit -> executor.submit(unit::object)).toList();
+            for (int i = 0; i < units.size(); i++) {
+                final Unit unit = units.get(i);
+                factories.put(unit.interfaceType(), load(unit, futures.get(i).get()));
+            }
+            return Collections.unmodifiableMap(factories);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new RuntimeException(e.getCause());
         } finally {
-            LLVMDisposeBuilder(builder);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets a new factory sharing the code of an identical compilation, or null if none is loaded.
+     */
+    private static synchronized FactoryImpl<?> acquire(Unit unit) {
+        final Loaded loaded = LOADED.get(unit.key());
+        if (loaded == null) return null;
+        loaded.references++;
+        return new FactoryImpl<>(loaded, unit);
+    }
+
+    /**
+     * Adds the object file of {@code unit} to the JIT, unless precompiled, and generates its class.
+     */
+    private static synchronized FactoryImpl<?> load(Unit unit, byte[] object) {
+        // Another thread may have loaded the same compilation in the meantime
+        final FactoryImpl<?> existing = acquire(unit);
+        if (existing != null) return existing;
+        Runnable unload = null;
+        if (unit.library() == null) {
+            final SpeCompileEvent linking = SpeCompileEvent.begin(unit.implementationType(), SpeCompileEvent.LINKING);
+            jit = true;
+            unload = SpeJit.add(unit.implementationType().getName(), object);
+            linking.commit();
+        }
+        final Loaded loaded;
+        try {
+            loaded = unit.load(unload);
+        } catch (RuntimeException e) {
+            if (unload != null) unload.run();
+            throw e;
+        }
+        LOADED.put(unit.key(), loaded);
+        return new FactoryImpl<>(loaded, unit);
+    }
+
+    private static synchronized void release(Loaded loaded) {
+        if (--loaded.references > 0 || LOADED.get(loaded.key) != loaded) return;
+        LOADED.remove(loaded.key);
+        loaded.session.close();
+        if (loaded.unload != null) loaded.unload.run();
+    }
+
+    private static synchronized MemorySegment staticField(Loaded loaded, String name) {
+        final MemorySegment cached = loaded.staticFields.get(name);
+        if (cached != null) return cached;
+        final Class<?> fieldType;
+        try {
+            final Field field = loaded.implementationType.getDeclaredField(name);
+            if (!Modifier.isStatic(field.getModifiers()) || (field.getType().isPrimitive() && Modifier.isFinal(field.getModifiers())))
+                throw new IllegalArgumentException("Field " + name + " is not a mutable static field");
+            fieldType = field.getType();
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("Unknown static field " + name, e);
         }
+        final long address, size;
+        try {
+            address = loaded.symbols.applyAsLong(SpeSymbols.staticSymbol(loaded.prefix, name));
+            if (fieldType.isArray()) {
+                final long lengthAddress = loaded.symbols.applyAsLong(SpeSymbols.staticLengthSymbol(loaded.prefix, name));
+                final int length = MemorySegment.ofAddress(MemoryAddress.ofLong(lengthAddress), Integer.BYTES, loaded.session).get(JAVA_INT, 0);
+                size = length * SpeSignature.elementLayout(fieldType).byteSize();
+            } else {
+                size = SpeSignature.toLayout(fieldType).byteSize();
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Static field " + name + " is not used by the compiled code", e);
+        }
+        final MemorySegment segment = MemorySegment.ofAddress(MemoryAddress.ofLong(address), size, loaded.session);
+        loaded.staticFields.put(name, segment);
+        return segment;
+    }
+
+    static String precompiledKey(Class<?> interfaceType, Class<?> implementationType, SpeOptions options) {
+        return SpeLibrary.key(interfaceType, implementationType, Unit.methods(interfaceType, implementationType), options.optimizationLevel());
+    }
 
-        // Verify the module using LLVMVerifier
-        LLVMDumpModule(module);
-        if (LLVMVerifyModule(module, LLVMPrintMessageAction, error) != 0) {
-            LLVMDisposeMessage(error);
-            throw new RuntimeException();
+    /**
+     * Compiles an implementation for {@link SpeAot}, its symbols being named after its precompiled key.
+     */
+    static byte[] precompile(Class<?> interfaceType, Class<?> implementationType, SpeOptions options) {
+        final List<Method> methods = Unit.methods(interfaceType, implementationType);
+        final Unit unit = new Unit(interfaceType, implementationType, null, methods, options, SpeTarget.of(options),
+                SpeLibrary.key(interfaceType, implementationType, methods, options.optimizationLevel()), null);
+        return SpeCodegen.compile(implementationType, null, methods, unit.target(), unit.prefix(), options.dumps());
+    }
+
+    /**
+     * An implementation to compile, its functions being named after its cache key to share a JIT with other units.
+     *
+     * @param library the library holding the implementation compiled ahead of time, null to compile it
+     */
+    private record Unit(Class<?> interfaceType, Class<?> implementationType, Object instance, List<Method> methods,
+                        SpeOptions options, SpeTarget target, String key, SpeLibrary library) {
+        static Unit of(Class<?> interfaceType, Class<?> implementationType, Object instance, SpeOptions options) {
+            final List<Method> affectedMethods = methods(interfaceType, implementationType);
+            // Dumps need the compilation to run
+            if (instance == null && options.dumps().isEmpty()) {
+                // Bound before touching LLVM, which is never loaded if every implementation is precompiled
+                final SpeLibrary library = SpeLibrary.find(interfaceType, implementationType, affectedMethods, options.optimizationLevel());
+                if (library != null) {
+                    return new Unit(interfaceType, implementationType, null, affectedMethods, options, null,
+                            library.key(implementationType), library);
+                }
+            }
+            final SpeTarget target = SpeTarget.of(options);
+            final String key = SpeCache.key(interfaceType, implementationType, affectedMethods,
+                    SpeCodegen.version(), target.triple(), target.cpu(), target.features(), target.optimizationLevel().name(),
+                    instance != null ? SpeCache.fields(instance) : "", SpeCache.staticFields(implementationType));
+            return new Unit(interfaceType, implementationType, instance, affectedMethods, options, target, key, null);
         }
 
-        // Create a pass pipeline using the legacy pass manager
-        LLVMPassManagerRef pm = LLVMCreatePassManager();
-        LLVMAddAggressiveInstCombinerPass(pm);
-        LLVMAddNewGVNPass(pm);
-        LLVMAddCFGSimplificationPass(pm);
-        LLVMRunPassManager(pm, module);
-        LLVMDisposePassManager(pm);
+        static List<Method> methods(Class<?> interfaceType, Class<?> implementationType) {
+            if (!interfaceType.isInterface() || !interfaceType.isAssignableFrom(implementationType))
+                throw new IllegalArgumentException(implementationType + " does not implement " + interfaceType);
+            return Arrays.stream(interfaceType.getMethods()).filter(method -> (method.getModifiers() & Modifier.ABSTRACT) != 0).toList();
+        }
+
+        String prefix() {
+            return "spe_" + key.substring(0, 16) + "_";
+        }
 
-        LLVMOrcThreadSafeContextRef threadContext = LLVMOrcCreateNewThreadSafeContext();
-        LLVMOrcThreadSafeModuleRef threadModule = LLVMOrcCreateNewThreadSafeModule(module, threadContext);
-        // Execute using OrcJIT
-        LLVMOrcLLJITRef jit = new LLVMOrcLLJITRef();
-        LLVMOrcLLJITBuilderRef jitBuilder = LLVMOrcCreateLLJITBuilder();
-        if ((err = LLVMOrcCreateLLJIT(jit, jitBuilder)) != null) {
-            LLVMConsumeError(err);
-            throw new RuntimeException("Failed to create LLJIT");
+        byte[] object() {
+            // Already in its library
+            if (library != null) return null;
+            // Skip LLVM entirely when the object file has already been produced by a previous run
+            final SpeCache cache = SpeCache.fromSystemProperty();
+            byte[] object = cache != null ? cache.load(key) : null;
+            if (object == null) {
+                object = SpeCodegen.compile(implementationType, instance, methods, target, prefix(), options.dumps());
+                if (cache != null) cache.store(key, object);
+            }
+            return object;
         }
-        LLVMOrcJITDylibRef mainDylib = LLVMOrcLLJITGetMainJITDylib(jit);
-        if ((err = LLVMOrcLLJITAddLLVMIRModule(jit, mainDylib, threadModule)) != null) {
-            System.err.println("Failed to add LLVM IR module: " + LLVMGetErrorMessage(err));
-            LLVMConsumeError(err);
-            throw new RuntimeException("Failed to add LLVM IR module");
+
+        Loaded load(Runnable unload) {
+            final MemorySession session = MemorySession.openShared();
+            try {
+                for (Method callback : SpeSymbols.callbacks(implementationType)) {
+                    final long global = lookup(SpeSymbols.callbackSymbol(prefix(), callback));
+                    SpeLinker.linkCallback(MemoryAddress.ofLong(global), callback, session);
+                }
+                return load(unload, session);
+            } catch (RuntimeException e) {
+                session.close();
+                throw e;
+            }
         }
 
-        var methodEntries = affectedMethods.stream().map(method -> {
-            final String methodName = method.getName();
-            final long address = addressOf(jit, methodName);
-            final FunctionDescriptor descriptor = SpeSignature.descriptor(method.getReturnType(), method.getParameterTypes());
-            return new SpeClassWriter.MethodEntry(methodName, descriptor, address);
-        }).toList();
+        private Loaded load(Runnable unload, MemorySession session) {
+            final Set<Method> reporting = SpeStatus.reporting(implementationType, methods);
+            var methodEntries = methods.stream().map(method -> {
+                final long address = lookup(SpeSymbols.symbol(prefix(), method));
+                final FunctionDescriptor descriptor = SpeSignature.descriptor(method.getReturnType(), method.getParameterTypes());
+                final MethodHandle handle = reporting.contains(method) ?
+                        SpeLinker.reportingDowncallHandle(MemoryAddress.ofLong(address), descriptor) :
+                        SpeLinker.downcallHandle(MemoryAddress.ofLong(address), descriptor);
+                return new SpeClassWriter.MethodEntry(method, descriptor, handle);
+            }).toList();
+
+            final SpeCompileEvent classGeneration = SpeCompileEvent.begin(implementationType, SpeCompileEvent.CLASS_GENERATION);
+            final Class<?> generated = SpeClassWriter.generate(interfaceType, methodEntries);
+            classGeneration.commit();
 
-        final Class<T> generated = SpeClassWriter.generate(interfaceType, methodEntries);
+            final Map<String, SpeBatch> batches = methods.stream()
+                    .filter(method -> method.isAnnotationPresent(Batched.class))
+                    .collect(Collectors.toUnmodifiableMap(Method::getName, method -> {
+                        final long address = lookup(SpeSymbols.batchSymbol(prefix(), method));
+                        final FunctionDescriptor descriptor = FunctionDescriptor.ofVoid(ADDRESS, ADDRESS, JAVA_LONG);
+                        final MethodHandle handle = reporting.contains(method) ?
+                                SpeLinker.reportingDowncallHandle(MemoryAddress.ofLong(address), descriptor) :
+                                SpeLinker.downcallHandle(MemoryAddress.ofLong(address), descriptor);
+                        return new SpeBatchImpl(handle, SpeSignature.batchLayout(method.getParameterTypes()),
+                                SpeSignature.toLayout(method.getReturnType()));
+                    }));
+            return new Loaded(key, prefix(), implementationType, generated, batches, this::lookup, unload, session);
+        }
 
-        final FactoryImpl<T> factory = new FactoryImpl<>(generated, jit);
-        synchronized (SpeAccess.class) {
-            FACTORIES.put(implementationType, factory);
+        long lookup(String name) {
+            return library != null ? library.lookup(name) : SpeJit.lookup(name);
         }
-        return factory;
     }
 
-    private static long addressOf(LLVMOrcLLJITRef jit, String name) {
-        final LongPointer res = new LongPointer(1);
-        if ((err = LLVMOrcLLJITLookup(jit, res, name)) != null) {
-            LLVMConsumeError(err);
-            throw new RuntimeException("Failed to look up symbol: " + name);
+    /**
+     * An object file in the JIT, removed once all the factories using it have been freed, or a precompiled library.
+     */
+    private static final class Loaded {
+        final String key;
+        final String prefix;
+        final Class<?> implementationType;
+        final Class<?> type;
+        final Map<String, SpeBatch> batches;
+        // Addresses of the symbols by name
+        final ToLongFunction<String> symbols;
+        // Removes the object file from the JIT, null if precompiled, the library staying loaded
+        final Runnable unload;
+        // Scope of the static field segments and upcall stubs, closed when the code is unloaded
+        final MemorySession session;
+        final Map<String, MemorySegment> staticFields = new HashMap<>();
+        int references = 1;
+
+        Loaded(String key, String prefix, Class<?> implementationType, Class<?> type,
+               Map<String, SpeBatch> batches, ToLongFunction<String> symbols, Runnable unload, MemorySession session) {
+            this.key = key;
+            this.prefix = prefix;
+            this.implementationType = implementationType;
+            this.type = type;
+            this.batches = batches;
+            this.symbols = symbols;
+            this.unload = unload;
+            this.session = session;
         }
-        return res.get();
     }
 
-    private record FactoryImpl<T>(Class<T> type, LLVMOrcLLJITRef jit) implements SpeFactory<T> {
+    private static final class FactoryImpl<T> implements SpeFactory<T> {
+        private final Loaded loaded;
+        // Class of the created instances, wrapping the native class if shadowing or metrics are enabled
+        private final Class<?> type;
+        private final SpeMetrics metrics;
+        private final AtomicBoolean freed = new AtomicBoolean();
+
+        FactoryImpl(Loaded loaded, Unit unit) {
+            this.loaded = loaded;
+            final SpeOptions options = unit.options();
+            Class<?> type = options.shadowSampleRate() > 0 ?
+                    shadow(unit, loaded.type, options.shadowSampleRate(), options.divergenceListener()) : loaded.type;
+            if (options.metrics()) {
+                this.metrics = new SpeMetrics(unit.interfaceType());
+                type = instrument(metrics, unit, type);
+                metrics.register();
+            } else {
+                this.metrics = null;
+            }
+            this.type = type;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Class<?> instrument(SpeMetrics metrics, Unit unit, Class<?> type) {
+            final T instance;
+            try {
+                instance = (T) type.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+            return metrics.generate((Class<T>) unit.interfaceType(), unit.methods(), instance);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Class<?> shadow(Unit unit, Class<?> nativeType, int sampleRate, SpeDivergence.Listener listener) {
+            final T javaInstance, nativeInstance;
+            try {
+                if (unit.instance() != null) {
+                    javaInstance = (T) unit.instance();
+                } else {
+                    final var constructor = unit.implementationType().getDeclaredConstructor();
+                    constructor.setAccessible(true);
+                    javaInstance = (T) constructor.newInstance();
+                }
+                nativeInstance = (T) nativeType.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException("Cannot create " + unit.implementationType().getName(), e);
+            }
+            return SpeShadow.generate((Class<T>) unit.interfaceType(), unit.methods(), javaInstance, nativeInstance, sampleRate, listener);
+        }
+
         @Override
+        @SuppressWarnings("unchecked")
         public @NotNull T create() {
+            if (freed.get()) throw new IllegalStateException("Factory has been freed");
             try {
-                return type.getDeclaredConstructor().newInstance();
+                return (T) type.getDeclaredConstructor().newInstance();
             } catch (InstantiationException | IllegalAccessException | InvocationTargetException |
                      NoSuchMethodException e) {
                 throw new RuntimeException(e);
             }
         }
+
+        @Override
+        public @NotNull SpeBatch batch(@NotNull String methodName) {
+            if (freed.get()) throw new IllegalStateException("Factory has been freed");
+            final SpeBatch batch = loaded.batches.get(methodName);
+            if (batch == null) throw new IllegalArgumentException("Method " + methodName + " is not batched");
+            return batch;
+        }
+
+        @Override
+        public @NotNull MemorySegment staticField(@NotNull String name) {
+            if (freed.get()) throw new IllegalStateException("Factory has been freed");
+            return Spe.staticField(loaded, name);
+        }
+
+        @Override
+        public void parallelFor(long start, long end, long grain, @NotNull RangeBody<T> body) {
+            parallelReduce(start, end, grain, (instance, chunkStart, chunkEnd) -> {
+                body.run(instance, chunkStart, chunkEnd);
+                return null;
+            }, (left, right) -> null);
+        }
+
+        @Override
+        public <R> R parallelReduce(long start, long end, long grain,
+                                    @NotNull RangeFunction<T, R> body, @NotNull BinaryOperator<R> combiner) {
+            // Instances only hold downcalls, one is shared by every worker
+            return SpeParallel.reduce(create(), start, end, grain, body, combiner);
+        }
+
+        @Override
+        public void free() {
+            if (!freed.compareAndSet(false, true)) return;
+            if (metrics != null) metrics.unregister();
+            release(loaded);
+        }
     }
 }
@@ -0,0 +1,88 @@
+package io.spe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Compiles implementations ahead of time into a shared library, bound to by {@link Spe#compile(Class, Class, SpeOptions)}
+ * at runtime without loading LLVM.
+ * <p>
+ * The library and its manifest are written to {@code META-INF/spe} of a directory meant to be packaged with the classes.
+ * An implementation is only bound to while its bytecode, its static fields and the compiler are unchanged,
+ * and on the operating system and architecture it was built on, it is compiled as usual otherwise.
+ * It is also compiled when the optimization level requested at runtime differs from the one of the library,
+ * or when dumps are requested. The CPU targeted is the one chosen here, the runtime {@link SpeOptions#hostCpu()}
+ * being ignored for precompiled code.
+ * <p>
+ * Object files are linked by the C compiler named by the {@code spe.linker} system property, {@code cc} by default.
+ * Applications running precompiled code alone can leave {@code org.bytedeco:llvm-platform} out of their runtime class path.
+ */
+public final class SpeAot {
+    private static final String LINKER_PROPERTY = "spe.linker";
+
+    private SpeAot() {
+    }
+
+    /**
+     * @param implementations the implementation of every interface
+     * @param output          the directory to write {@code META-INF/spe} to
+     * @param options         the options to compile with, usually targeting a generic CPU
+     * @throws IOException if the files cannot be written or the object files cannot be linked
+     */
+    public static void precompile(@NotNull Map<Class<?>, Class<?>> implementations, @NotNull Path output,
+                                  @NotNull SpeOptions options) throws IOException {
+        final Path directory = output.resolve(SpeLibrary.MANIFEST).getParent();
+        final String libraryName = System.mapLibraryName("spe-precompiled");
+        final Path objects = Files.createTempDirectory("spe");
+        try {
+            final Properties manifest = new Properties();
+            final List<String> command = new ArrayList<>(List.of(System.getProperty(LINKER_PROPERTY, "cc"), "-shared",
+                    "-o", directory.resolve(libraryName).toString()));
+            for (var entry : implementations.entrySet()) {
+                final Class<?> implementationType = entry.getValue();
+                final String key = Spe.precompiledKey(entry.getKey(), implementationType, options);
+                final Path object = objects.resolve(key + ".o");
+                Files.write(object, Spe.precompile(entry.getKey(), implementationType, options));
+                command.add(object.toString());
+                manifest.setProperty(implementationType.getName(), key);
+            }
+            // Intrinsics may be lowered to calls to the math library
+            command.add("-lm");
+
+            Files.createDirectories(directory);
+            link(command);
+            manifest.setProperty(SpeLibrary.LIBRARY, libraryName);
+            manifest.setProperty(SpeLibrary.DIGEST, SpeLibrary.digest(directory.resolve(libraryName)));
+            manifest.setProperty(SpeLibrary.OS_NAME, System.getProperty(SpeLibrary.OS_NAME));
+            manifest.setProperty(SpeLibrary.OS_ARCH, System.getProperty(SpeLibrary.OS_ARCH));
+            try (OutputStream stream = Files.newOutputStream(output.resolve(SpeLibrary.MANIFEST))) {
+                manifest.store(stream, "Implementations compiled ahead of time, by key");
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(objects)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+            }
+        }
+    }
+
+    private static void link(List<String> command) throws IOException {
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        final String log = new String(process.getInputStream().readAllBytes());
+        try {
+            if (process.waitFor() != 0) throw new IOException("Failed to link " + String.join(" ", command) + ":\n" + log);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while linking", e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.spe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.foreign.Addressable;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.invoke.MethodHandle;
+
+record SpeBatchImpl(MethodHandle handle, MemoryLayout inputLayout, MemoryLayout outputLayout) implements SpeBatch {
+    @Override
+    public void invoke(@NotNull MemorySegment input, @NotNull MemorySegment output, long count) {
+        if (count < 0) throw new IllegalArgumentException("Negative count: " + count);
+        checkSize(input, inputLayout, count);
+        checkSize(output, outputLayout, count);
+        try {
+            handle.invokeExact((Addressable) input, (Addressable) output, count);
+        } catch (ArithmeticException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void checkSize(MemorySegment segment, MemoryLayout layout, long count) {
+        if (Math.multiplyExact(layout.byteSize(), count) > segment.byteSize())
+            throw new IndexOutOfBoundsException("Segment of " + segment.byteSize() + " bytes is too small for " + count + " elements");
+    }
+}
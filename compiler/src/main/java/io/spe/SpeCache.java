@@ -0,0 +1,160 @@
+package io.spe;
+
+import io.spe.compiler.SpeCompiler;
+import io.spe.compiler.SpeStatus;
+import io.spe.compiler.SpeSymbols;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store of the object files produced for compiled implementations.
+ * <p>
+ * Enabled by pointing the {@code spe.cache} system property to a directory, read on every compilation.
+ */
+final class SpeCache {
+    private static final String PROPERTY = "spe.cache";
+
+    private final Path directory;
+
+    private SpeCache(Path directory) {
+        this.directory = directory;
+    }
+
+    static @Nullable SpeCache fromSystemProperty() {
+        final String directory = System.getProperty(PROPERTY);
+        if (directory == null || directory.isBlank()) return null;
+        return new SpeCache(Path.of(directory));
+    }
+
+    /**
+     * Computes the key of a compilation, changing whenever the produced object file could.
+     *
+     * @param settings LLVM version, target and optimization settings used to emit the object file
+     */
+    static String key(Class<?> interfaceType, Class<?> implementationType, List<Method> methods, String... settings) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(classBytes(implementationType));
+        // Loaded to read their bytes only, LLVM staying unloaded for precompiled code
+        for (Class<?> compilerClass : List.of(SpeCompiler.class, SpeSymbols.class, SpeStatus.class)) {
+            for (Class<?> member : compilerClass.getNestMembers()) digest.update(classBytes(member));
+        }
+        update(digest, interfaceType.getName());
+        // Records are compiled as structs of their components
+        methods.stream()
+                .flatMap(method -> Stream.concat(Stream.of(method.getReturnType()), Arrays.stream(method.getParameterTypes())))
+                .filter(Class::isRecord).distinct()
+                .sorted(Comparator.comparing(Class::getName))
+                .forEach(recordType -> digest.update(classBytes(recordType)));
+        methods.stream()
+                .map(method -> method.getName() + Type.getMethodDescriptor(method)
+                        + (method.isAnnotationPresent(Batched.class) ? "@Batched" : ""))
+                .sorted(Comparator.naturalOrder())
+                .forEach(signature -> update(digest, signature));
+        for (String setting : settings) update(digest, setting);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Describes the final fields of {@code instance} that compiled code can read as constants.
+     */
+    static String fields(Object instance) {
+        return describe(instance.getClass(), instance, field -> (field.getModifiers() & (Modifier.STATIC | Modifier.FINAL)) == Modifier.FINAL);
+    }
+
+    /**
+     * Describes the static fields of {@code type}, whose current values initialize those of compiled code.
+     */
+    static String staticFields(Class<?> type) {
+        return describe(type, null, field -> Modifier.isStatic(field.getModifiers()));
+    }
+
+    private static String describe(Class<?> type, @Nullable Object instance, Predicate<Field> filter) {
+        final StringBuilder builder = new StringBuilder();
+        Arrays.stream(type.getDeclaredFields())
+                .filter(filter)
+                .filter(field -> field.getType().isPrimitive() || (field.getType().isArray() && field.getType().getComponentType().isPrimitive()))
+                .sorted(Comparator.comparing(Field::getName))
+                .forEach(field -> {
+                    field.setAccessible(true);
+                    try {
+                        builder.append(field.getName()).append('=')
+                                .append(Arrays.deepToString(new Object[]{field.get(instance)})).append(';');
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+        return builder.toString();
+    }
+
+    @Nullable byte[] load(String key) {
+        final Path path = path(key);
+        if (!Files.isRegularFile(path)) return null;
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            // A broken entry is a miss, it will be overwritten
+            return null;
+        }
+    }
+
+    void store(String key, byte[] object) {
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporary, object);
+            Files.move(temporary, path(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The cache is only an optimization, the compiled code is still usable
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private Path path(String key) {
+        return directory.resolve(key + ".o");
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    static byte[] classBytes(Class<?> type) {
+        final String resource = "/" + type.getName().replace('.', '/') + ".class";
+        try (InputStream stream = type.getResourceAsStream(resource)) {
+            if (stream == null) throw new IllegalArgumentException("Cannot find the bytecode of " + type);
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
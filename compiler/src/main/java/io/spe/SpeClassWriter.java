@@ -2,43 +2,114 @@ package io.spe;
 
 import org.objectweb.asm.*;
 
+import java.lang.constant.ConstantDescs;
 import java.lang.foreign.FunctionDescriptor;
 import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
+import java.lang.reflect.RecordComponent;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
 
 import static java.lang.foreign.ValueLayout.*;
 import static org.objectweb.asm.Opcodes.*;
 
 final class SpeClassWriter {
-    private static final SpeClassLoader LOADER = new SpeClassLoader();
+    // MethodHandles#classDataAt(Lookup, String, Class, int), loading a handle of the class data as a constant
+    private static final Handle CLASS_DATA_AT = new Handle(H_INVOKESTATIC, "java/lang/invoke/MethodHandles", "classDataAt",
+            "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;I)Ljava/lang/Object;", false);
 
     static <T> Class<T> generate(Class<T> interfaceType, List<MethodEntry> methods) {
         final String name = interfaceType.getName() + "Native";
-        final byte[] bytes = dump(interfaceType, methods);
-        return (Class<T>) LOADER.defineClass(name, bytes);
+        final byte[] bytes = dump(interfaceType, name, methods);
+        return define(interfaceType, bytes, methods.stream().map(MethodEntry::handle).toList());
     }
 
-    private static byte[] dump(Class<?> interfaceType, List<MethodEntry> methods) {
+    /**
+     * Generates a class calling every method through the matching handle of {@code invokers}.
+     *
+     * @param suffix appended to the name of the interface to name the class
+     */
+    static <T> Class<T> generateForwarding(Class<T> interfaceType, String suffix, List<Method> methods, List<MethodHandle> invokers) {
+        final byte[] bytes = dumpForwarding(interfaceType, suffix, methods);
+        return define(interfaceType, bytes, invokers);
+    }
+
+    /**
+     * Defines a hidden class next to {@code interfaceType}, unloaded along with the handles it holds once unreachable.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Class<T> define(Class<T> interfaceType, byte[] bytes, List<MethodHandle> handles) {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(interfaceType, MethodHandles.lookup());
+            return (Class<T>) lookup.defineHiddenClassWithClassData(bytes, handles, true).lookupClass();
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot define a class implementing " + interfaceType, e);
+        }
+    }
+
+    /**
+     * Loads the handle at {@code index} of the class data.
+     */
+    private static ConstantDynamic handle(int index) {
+        return new ConstantDynamic(ConstantDescs.DEFAULT_NAME, "Ljava/lang/invoke/MethodHandle;", CLASS_DATA_AT, index);
+    }
+
+    private static byte[] dumpForwarding(Class<?> interfaceType, String suffix, List<Method> methods) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+        MethodVisitor methodVisitor;
+
+        final String className = (interfaceType.getName() + suffix).replace('.', '/');
+        classWriter.visit(V19 | V_PREVIEW, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, "java/lang/Object", new String[]{Type.getInternalName(interfaceType)});
+        classWriter.visitSource(interfaceType.getSimpleName() + suffix + ".java", null);
+
+        // Constructor
+        {
+            methodVisitor = classWriter.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+            methodVisitor.visitCode();
+            methodVisitor.visitVarInsn(ALOAD, 0);
+            methodVisitor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            methodVisitor.visitInsn(RETURN);
+            methodVisitor.visitMaxs(-1, -1);
+            methodVisitor.visitEnd();
+        }
+        // Methods
+        for (int index = 0; index < methods.size(); index++) {
+            final Method method = methods.get(index);
+            final String methodDescriptor = Type.getMethodDescriptor(method);
+            methodVisitor = classWriter.visitMethod(ACC_PUBLIC, method.getName(), methodDescriptor, null, null);
+            methodVisitor.visitCode();
+            methodVisitor.visitLdcInsn(handle(index));
+            int slot = 1;
+            for (Class<?> type : method.getParameterTypes()) {
+                methodVisitor.visitVarInsn(SpeSignature.loadOpcode(type), slot);
+                slot += Type.getType(type).getSize();
+            }
+            methodVisitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", methodDescriptor, false);
+            methodVisitor.visitInsn(SpeSignature.returnOpcode(method.getReturnType()));
+            methodVisitor.visitMaxs(-1, -1);
+            methodVisitor.visitEnd();
+        }
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static byte[] dump(Class<?> interfaceType, String name, List<MethodEntry> methods) {
         ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
         FieldVisitor fieldVisitor;
         MethodVisitor methodVisitor;
 
         final String fileName = interfaceType.getSimpleName() + "Native";
-        final String className = (interfaceType.getName() + "Native").replace('.', '/');
+        final String className = name.replace('.', '/');
         final String internalDescriptor = "L" + className + ";";
 
         classWriter.visit(V19 | V_PREVIEW, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, "java/lang/Object", new String[]{Type.getInternalName(interfaceType)});
         classWriter.visitSource(fileName + ".java", null);
 
-        // Fields
-        {
-            for (MethodEntry method : methods) {
-                fieldVisitor = classWriter.visitField(ACC_PRIVATE | ACC_FINAL | ACC_STATIC, method.constantName(), "Ljava/lang/invoke/MethodHandle;", null, null);
-                fieldVisitor.visitEnd();
-            }
-        }
         // Constructor
         {
             methodVisitor = classWriter.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
@@ -56,80 +127,145 @@ final class SpeClassWriter {
         }
         // Methods
         {
-            for (Method m : interfaceType.getMethods()) {
+            for (int index = 0; index < methods.size(); index++) {
+                final MethodEntry entry = methods.get(index);
+                final Method m = entry.method();
                 final String methodName = m.getName();
                 final String methodDescriptor = Type.getMethodDescriptor(m);
-                final String constantName = toConstantName(methodName);
                 methodVisitor = classWriter.visitMethod(ACC_PUBLIC, methodName, methodDescriptor, null, null);
                 methodVisitor.visitCode();
-                methodVisitor.visitFieldInsn(GETSTATIC, className, constantName, "Ljava/lang/invoke/MethodHandle;");
                 final Class<?>[] param = m.getParameterTypes();
+                final int[] paramSlots = new int[param.length];
+                int slot = 1;
                 for (int i = 0; i < param.length; i++) {
-                    methodVisitor.visitVarInsn(SpeSignature.loadOpcode(param[i]), i + 1);
-                }
-                methodVisitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", methodDescriptor, false);
-                methodVisitor.visitInsn(SpeSignature.returnOpcode(m.getReturnType()));
-            }
-            methodVisitor.visitMaxs(-1, -1);
-            methodVisitor.visitEnd();
-        }
-        // Fields initializer
-        {
-            methodVisitor = classWriter.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
-            methodVisitor.visitCode();
-            for (MethodEntry entry : methods) {
-                final String constantName = entry.constantName();
-                // Address
-                methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/foreign/Linker", "nativeLinker", "()Ljava/lang/foreign/Linker;", true);
-                methodVisitor.visitLdcInsn(entry.address());
-                methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/foreign/MemoryAddress", "ofLong", "(J)Ljava/lang/foreign/MemoryAddress;", true);
-                // Return
-                final MemoryLayout returnLayout = entry.descriptor().returnLayout().orElse(null);
-                if (returnLayout != null) {
-                    methodVisitor.visitFieldInsn(GETSTATIC, "java/lang/foreign/ValueLayout", getter(returnLayout), Type.getDescriptor(returnLayout.getClass()));
+                    paramSlots[i] = slot;
+                    slot += Type.getType(param[i]).getSize();
                 }
-                // Arguments
-                final List<MemoryLayout> argumentTypes = entry.descriptor().argumentLayouts();
-                final int argumentCount = argumentTypes.size();
-                appendInteger(methodVisitor, argumentCount);
-                methodVisitor.visitTypeInsn(ANEWARRAY, "java/lang/foreign/MemoryLayout");
-                if (argumentCount > 0) {
-                    methodVisitor.visitInsn(DUP);
-                    for (int i = 0; i < argumentCount; i++) {
-                        appendInteger(methodVisitor, i);
-                        final MemoryLayout layout = argumentTypes.get(i);
+                final Class<?> returnType = m.getReturnType();
+                // Arrays are copied to native memory for the duration of the call, and copied back after it,
+                // records are returned in native memory
+                final boolean openSession = Arrays.stream(param).anyMatch(Class::isArray) || returnType.isRecord();
+                final int sessionSlot = slot++;
+                final int outputSlot = slot++;
+                final int[] segmentSlots = new int[param.length];
+                Label start = new Label(), end = new Label(), handler = new Label();
+                if (openSession) {
+                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/foreign/MemorySession", "openConfined", "()Ljava/lang/foreign/MemorySession;", true);
+                    methodVisitor.visitVarInsn(ASTORE, sessionSlot);
+                    methodVisitor.visitTryCatchBlock(start, end, handler, null);
+                    methodVisitor.visitLabel(start);
+                    for (int i = 0; i < param.length; i++) {
+                        if (!param[i].isArray()) continue;
+                        final ValueLayout layout = SpeSignature.elementLayout(param[i]);
+                        methodVisitor.visitVarInsn(ALOAD, sessionSlot);
                         methodVisitor.visitFieldInsn(GETSTATIC, "java/lang/foreign/ValueLayout", getter(layout), Type.getDescriptor(layout.getClass()));
-                        methodVisitor.visitInsn(AASTORE);
+                        methodVisitor.visitVarInsn(ALOAD, paramSlots[i]);
+                        methodVisitor.visitMethodInsn(INVOKEINTERFACE, "java/lang/foreign/SegmentAllocator", "allocateArray",
+                                "(" + Type.getDescriptor(layout.getClass()) + Type.getDescriptor(param[i]) + ")Ljava/lang/foreign/MemorySegment;", true);
+                        segmentSlots[i] = slot;
+                        methodVisitor.visitVarInsn(ASTORE, slot++);
+                    }
+                    if (returnType.isRecord()) {
+                        final StructLayout layout = SpeSignature.recordLayout(returnType);
+                        methodVisitor.visitVarInsn(ALOAD, sessionSlot);
+                        methodVisitor.visitLdcInsn(layout.byteSize());
+                        methodVisitor.visitLdcInsn(layout.byteAlignment());
+                        methodVisitor.visitMethodInsn(INVOKEINTERFACE, "java/lang/foreign/SegmentAllocator", "allocate", "(JJ)Ljava/lang/foreign/MemorySegment;", true);
+                        methodVisitor.visitVarInsn(ASTORE, outputSlot);
                     }
                 }
-                // Create method handle
-                if (returnLayout != null) {
-                    // FunctionDescriptor#of(MemoryLayout, MemoryLayout...)
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/foreign/FunctionDescriptor", "of", "(Ljava/lang/foreign/MemoryLayout;[Ljava/lang/foreign/MemoryLayout;)Ljava/lang/foreign/FunctionDescriptor;", false);
+                methodVisitor.visitLdcInsn(handle(index));
+                if (returnType.isRecord()) methodVisitor.visitVarInsn(ALOAD, outputSlot);
+                for (int i = 0; i < param.length; i++) {
+                    final Class<?> type = param[i];
+                    if (type.isRecord()) {
+                        // Components are passed separately
+                        for (RecordComponent component : type.getRecordComponents()) {
+                            methodVisitor.visitVarInsn(ALOAD, paramSlots[i]);
+                            methodVisitor.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(type), component.getName(),
+                                    Type.getMethodDescriptor(component.getAccessor()), false);
+                        }
+                    } else if (type == MemorySegment.class) {
+                        methodVisitor.visitVarInsn(ALOAD, paramSlots[i]);
+                        methodVisitor.visitVarInsn(ALOAD, paramSlots[i]);
+                        methodVisitor.visitMethodInsn(INVOKEINTERFACE, "java/lang/foreign/MemorySegment", "byteSize", "()J", true);
+                    } else if (type.isArray()) {
+                        methodVisitor.visitVarInsn(ALOAD, segmentSlots[i]);
+                        methodVisitor.visitVarInsn(ALOAD, paramSlots[i]);
+                        methodVisitor.visitInsn(ARRAYLENGTH);
+                    } else {
+                        methodVisitor.visitVarInsn(SpeSignature.loadOpcode(type), paramSlots[i]);
+                    }
+                }
+                methodVisitor.visitMethodInsn(INVOKEVIRTUAL, "java/lang/invoke/MethodHandle", "invokeExact", SpeSignature.downcallDescriptor(entry.descriptor()), false);
+                if (returnType.isRecord()) readRecord(methodVisitor, returnType, outputSlot);
+                if (openSession) {
+                    final int resultSlot = slot;
+                    if (returnType != void.class) methodVisitor.visitVarInsn(SpeSignature.storeOpcode(returnType), resultSlot);
+                    for (int i = 0; i < param.length; i++) {
+                        if (!param[i].isArray()) continue;
+                        final ValueLayout layout = SpeSignature.elementLayout(param[i]);
+                        // MemorySegment#copy(MemorySegment, ValueLayout, long, Object, int, int)
+                        methodVisitor.visitVarInsn(ALOAD, segmentSlots[i]);
+                        methodVisitor.visitFieldInsn(GETSTATIC, "java/lang/foreign/ValueLayout", getter(layout), Type.getDescriptor(layout.getClass()));
+                        methodVisitor.visitInsn(LCONST_0);
+                        methodVisitor.visitVarInsn(ALOAD, paramSlots[i]);
+                        methodVisitor.visitInsn(ICONST_0);
+                        methodVisitor.visitVarInsn(ALOAD, paramSlots[i]);
+                        methodVisitor.visitInsn(ARRAYLENGTH);
+                        methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/foreign/MemorySegment", "copy",
+                                "(Ljava/lang/foreign/MemorySegment;Ljava/lang/foreign/ValueLayout;JLjava/lang/Object;II)V", true);
+                    }
+                    methodVisitor.visitLabel(end);
+                    methodVisitor.visitVarInsn(ALOAD, sessionSlot);
+                    methodVisitor.visitMethodInsn(INVOKEINTERFACE, "java/lang/foreign/MemorySession", "close", "()V", true);
+                    if (returnType != void.class) methodVisitor.visitVarInsn(SpeSignature.loadOpcode(returnType), resultSlot);
+                    methodVisitor.visitInsn(SpeSignature.returnOpcode(returnType));
+                    // Release the copies if anything goes wrong
+                    methodVisitor.visitLabel(handler);
+                    methodVisitor.visitVarInsn(ALOAD, sessionSlot);
+                    methodVisitor.visitMethodInsn(INVOKEINTERFACE, "java/lang/foreign/MemorySession", "close", "()V", true);
+                    methodVisitor.visitInsn(ATHROW);
                 } else {
-                    // FunctionDescriptor#ofVoid(MemoryLayout...)
-                    methodVisitor.visitMethodInsn(INVOKESTATIC, "java/lang/foreign/FunctionDescriptor", "ofVoid", "([Ljava/lang/foreign/MemoryLayout;)Ljava/lang/foreign/FunctionDescriptor;", false);
+                    methodVisitor.visitInsn(SpeSignature.returnOpcode(returnType));
                 }
-                methodVisitor.visitMethodInsn(INVOKEINTERFACE, "java/lang/foreign/Linker", "downcallHandle", "(Ljava/lang/foreign/Addressable;Ljava/lang/foreign/FunctionDescriptor;)Ljava/lang/invoke/MethodHandle;", true);
-                methodVisitor.visitFieldInsn(PUTSTATIC, className, constantName, "Ljava/lang/invoke/MethodHandle;");
+                methodVisitor.visitMaxs(-1, -1);
+                methodVisitor.visitEnd();
             }
-            methodVisitor.visitInsn(RETURN);
-            methodVisitor.visitMaxs(-1, -1);
-            methodVisitor.visitEnd();
         }
         classWriter.visitEnd();
 
         return classWriter.toByteArray();
     }
 
-    record MethodEntry(String name, FunctionDescriptor descriptor, long address) {
-        String constantName() {
-            return toConstantName(name);
+    /**
+     * Constructs a record from the components stored in the segment at {@code segmentSlot}.
+     */
+    private static void readRecord(MethodVisitor methodVisitor, Class<?> recordType, int segmentSlot) {
+        final StructLayout layout = SpeSignature.recordLayout(recordType);
+        final String internalName = Type.getInternalName(recordType);
+        methodVisitor.visitTypeInsn(NEW, internalName);
+        methodVisitor.visitInsn(DUP);
+        final RecordComponent[] components = recordType.getRecordComponents();
+        final Class<?>[] componentTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            componentTypes[i] = components[i].getType();
+            final ValueLayout componentLayout = (ValueLayout) SpeSignature.toLayout(componentTypes[i]);
+            final String layoutDescriptor = Type.getDescriptor(componentLayout.getClass());
+            methodVisitor.visitVarInsn(ALOAD, segmentSlot);
+            methodVisitor.visitFieldInsn(GETSTATIC, "java/lang/foreign/ValueLayout", getter(componentLayout), layoutDescriptor);
+            methodVisitor.visitLdcInsn(layout.byteOffset(MemoryLayout.PathElement.groupElement(components[i].getName())));
+            methodVisitor.visitMethodInsn(INVOKEINTERFACE, "java/lang/foreign/MemorySegment", "get",
+                    "(" + layoutDescriptor + "J)" + Type.getDescriptor(componentTypes[i]), true);
         }
+        methodVisitor.visitMethodInsn(INVOKESPECIAL, internalName, "<init>",
+                Type.getMethodDescriptor(Type.VOID_TYPE, Arrays.stream(componentTypes).map(Type::getType).toArray(Type[]::new)), false);
     }
 
-    private static String toConstantName(String name) {
-        return name.toUpperCase(Locale.ROOT);
+    /**
+     * @param handle the downcall handle of the compiled function, of type {@link SpeSignature#downcallDescriptor(FunctionDescriptor)}
+     */
+    record MethodEntry(Method method, FunctionDescriptor descriptor, MethodHandle handle) {
     }
 
     private static String getter(MemoryLayout layout) {
@@ -141,11 +277,7 @@ final class SpeClassWriter {
         if (layout == JAVA_LONG) return "JAVA_LONG";
         if (layout == JAVA_DOUBLE) return "JAVA_DOUBLE";
         if (layout == JAVA_FLOAT) return "JAVA_FLOAT";
+        if (layout == ADDRESS) return "ADDRESS";
         throw new IllegalArgumentException("Unsupported layout: " + layout);
     }
-
-    private static void appendInteger(MethodVisitor methodVisitor, int n) {
-        if (n >= 0 && n <= 5) methodVisitor.visitInsn(ICONST_0 + n);
-        else methodVisitor.visitLdcInsn(n);
-    }
 }
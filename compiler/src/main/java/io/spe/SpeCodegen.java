@@ -0,0 +1,137 @@
+package io.spe;
+
+import io.spe.compiler.SpeCompiler;
+import io.spe.compiler.SpeSymbols;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.llvm.LLVM.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Translates implementations to object files with LLVM.
+ * <p>
+ * Only loaded when an implementation is compiled, so that LLVM is not needed when every implementation is precompiled.
+ */
+final class SpeCodegen {
+    private SpeCodegen() {
+    }
+
+    /**
+     * Gets the version of the LLVM presets, which code generation depends on.
+     */
+    static String version() {
+        return String.valueOf(Loader.getVersion("org.bytedeco", "llvm"));
+    }
+
+    /**
+     * Compiles {@code affectedMethods} of an implementation into an object file for {@code target},
+     * writing the requested dumps along the way.
+     *
+     * @param instance the instance whose final fields are folded into the code, null to compile the class alone
+     * @param prefix   prepended to every symbol, see {@link SpeSymbols}
+     */
+    static byte[] compile(Class<?> implementationType, @Nullable Object instance, List<Method> affectedMethods, SpeTarget target, String prefix,
+                          Map<SpeOptions.Dump, Path> dumps) {
+        // Each compilation owns its context, allowing many of them to run in parallel
+        LLVMContextRef context = LLVMContextCreate();
+        LLVMModuleRef module = LLVMModuleCreateWithNameInContext(implementationType.getSimpleName(), context);
+        LLVMBuilderRef builder = LLVMCreateBuilderInContext(context);
+        LLVMTargetMachineRef targetMachine = target.createMachine();
+        final BytePointer error = new BytePointer();
+        final String dumpName = prefix + implementationType.getName();
+        final StringBuilder bytecodeMap = dumps.containsKey(SpeOptions.Dump.BYTECODE_MAP) ? new StringBuilder() : null;
+        try {
+            final SpeCompileEvent translation = SpeCompileEvent.begin(implementationType, SpeCompileEvent.TRANSLATION);
+            if (instance != null) SpeCompiler.compile(module, builder, instance, affectedMethods, prefix, bytecodeMap);
+            else SpeCompiler.compile(module, builder, implementationType, affectedMethods, prefix, bytecodeMap);
+            if (bytecodeMap != null) dump(dumps, SpeOptions.Dump.BYTECODE_MAP, dumpName, bytecodeMap.toString().getBytes(StandardCharsets.UTF_8));
+            // Written before verification, to inspect invalid modules
+            if (dumps.containsKey(SpeOptions.Dump.IR)) dump(dumps, SpeOptions.Dump.IR, dumpName, moduleText(module));
+
+            // Verify the module using LLVMVerifier
+            if (LLVMVerifyModule(module, LLVMReturnStatusAction, error) != 0) {
+                final String message = error.getString();
+                LLVMDisposeMessage(error);
+                throw new RuntimeException("Invalid module: " + message);
+            }
+            translation.commit();
+
+            LLVMSetTarget(module, target.triple());
+            LLVMTargetDataRef dataLayout = LLVMCreateTargetDataLayout(targetMachine);
+            LLVMSetModuleDataLayout(module, dataLayout);
+            LLVMDisposeTargetData(dataLayout);
+
+            // Run the new pass manager pipeline, vectorizers included
+            final SpeCompileEvent optimization = SpeCompileEvent.begin(implementationType, SpeCompileEvent.OPTIMIZATION);
+            LLVMPassBuilderOptionsRef passBuilderOptions = target.createPassBuilderOptions();
+            final LLVMErrorRef err = LLVMRunPasses(module, target.passes(), targetMachine, passBuilderOptions);
+            LLVMDisposePassBuilderOptions(passBuilderOptions);
+            if (err != null) {
+                throw new RuntimeException("Failed to optimize module: " + SpeJit.errorMessage(err));
+            }
+            optimization.commit();
+            if (dumps.containsKey(SpeOptions.Dump.OPTIMIZED_IR)) dump(dumps, SpeOptions.Dump.OPTIMIZED_IR, dumpName, moduleText(module));
+
+            final SpeCompileEvent codeGeneration = SpeCompileEvent.begin(implementationType, SpeCompileEvent.CODE_GENERATION);
+            final byte[] object = emit(targetMachine, module, LLVMObjectFile);
+            codeGeneration.commit();
+            if (dumps.containsKey(SpeOptions.Dump.OBJECT)) dump(dumps, SpeOptions.Dump.OBJECT, dumpName, object);
+            if (dumps.containsKey(SpeOptions.Dump.ASSEMBLY)) dump(dumps, SpeOptions.Dump.ASSEMBLY, dumpName, emit(targetMachine, module, LLVMAssemblyFile));
+            return object;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            LLVMDisposeBuilder(builder);
+            LLVMDisposeTargetMachine(targetMachine);
+            LLVMDisposeModule(module);
+            LLVMContextDispose(context);
+        }
+    }
+
+    private static byte[] emit(LLVMTargetMachineRef targetMachine, LLVMModuleRef module, int fileType) {
+        final BytePointer error = new BytePointer();
+        LLVMMemoryBufferRef buffer = new LLVMMemoryBufferRef();
+        if (LLVMTargetMachineEmitToMemoryBuffer(targetMachine, module, fileType, error, buffer) != 0) {
+            final String message = error.getString();
+            LLVMDisposeMessage(error);
+            throw new RuntimeException("Failed to emit " + (fileType == LLVMObjectFile ? "object file" : "assembly") + ": " + message);
+        }
+        final byte[] bytes = new byte[(int) LLVMGetBufferSize(buffer)];
+        LLVMGetBufferStart(buffer).get(bytes);
+        LLVMDisposeMemoryBuffer(buffer);
+        return bytes;
+    }
+
+    private static byte[] moduleText(LLVMModuleRef module) {
+        final BytePointer text = LLVMPrintModuleToString(module);
+        final byte[] bytes = text.getStringBytes();
+        LLVMDisposeMessage(text);
+        return bytes;
+    }
+
+    /**
+     * Writes the file of {@code kind} named {@code name} to its directory, created if missing.
+     */
+    private static void dump(Map<SpeOptions.Dump, Path> dumps, SpeOptions.Dump kind, String name, byte[] content) throws IOException {
+        final Path directory = dumps.get(kind);
+        final String extension = switch (kind) {
+            case IR -> ".ll";
+            case OPTIMIZED_IR -> ".opt.ll";
+            case ASSEMBLY -> ".s";
+            case OBJECT -> ".o";
+            case BYTECODE_MAP -> ".map";
+        };
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(name + extension), content);
+    }
+}
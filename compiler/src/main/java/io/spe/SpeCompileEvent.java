@@ -0,0 +1,35 @@
+package io.spe;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Duration of a phase of a compilation, recorded by Flight Recorder when enabled.
+ */
+@Name("io.spe.CompilePhase")
+@Label("Compile Phase")
+@Category("Spe")
+@Description("Phase of the compilation of an implementation to native code")
+final class SpeCompileEvent extends Event {
+    static final String TRANSLATION = "Translation", OPTIMIZATION = "Optimization", CODE_GENERATION = "Code Generation",
+            LINKING = "Linking", CLASS_GENERATION = "Class Generation";
+
+    @Label("Implementation")
+    final String implementation;
+    @Label("Phase")
+    final String phase;
+
+    private SpeCompileEvent(Class<?> implementationType, String phase) {
+        this.implementation = implementationType.getName();
+        this.phase = phase;
+    }
+
+    static SpeCompileEvent begin(Class<?> implementationType, String phase) {
+        final SpeCompileEvent event = new SpeCompileEvent(implementationType, phase);
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,83 @@
+package io.spe;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.LongPointer;
+import org.bytedeco.llvm.LLVM.*;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * The process-wide JIT, every object file being added with its own resource tracker to be removable alone.
+ * <p>
+ * The LLVM 14 C API only looks symbols up in the main JITDylib, so object files all live there
+ * and are isolated by their resource tracker and the unique prefix of their symbols.
+ */
+final class SpeJit {
+    private static LLVMOrcLLJITRef jit;
+
+    private SpeJit() {
+    }
+
+    /**
+     * Adds an object file with a resource tracker of its own.
+     *
+     * @return removes the object file, freeing its code and data
+     */
+    static synchronized Runnable add(String name, byte[] object) {
+        final LLVMOrcLLJITRef jit = jit();
+        final LLVMOrcResourceTrackerRef tracker = LLVMOrcJITDylibCreateResourceTracker(LLVMOrcLLJITGetMainJITDylib(jit));
+        LLVMMemoryBufferRef objectBuffer = LLVMCreateMemoryBufferWithMemoryRangeCopy(new BytePointer(object), object.length, new BytePointer(name));
+        final LLVMErrorRef err = LLVMOrcLLJITAddObjectFileWithRT(jit, tracker, objectBuffer);
+        if (err != null) {
+            LLVMOrcReleaseResourceTracker(tracker);
+            throw new RuntimeException("Failed to add object file: " + errorMessage(err));
+        }
+        return () -> remove(tracker);
+    }
+
+    static synchronized long lookup(String name) {
+        final LongPointer res = new LongPointer(1);
+        final LLVMErrorRef err = LLVMOrcLLJITLookup(jit(), res, name);
+        if (err != null) {
+            throw new RuntimeException("Failed to look up symbol " + name + ": " + errorMessage(err));
+        }
+        return res.get();
+    }
+
+    private static synchronized void remove(LLVMOrcResourceTrackerRef tracker) {
+        final LLVMErrorRef err = LLVMOrcResourceTrackerRemove(tracker);
+        LLVMOrcReleaseResourceTracker(tracker);
+        if (err != null) {
+            throw new RuntimeException("Failed to remove object file: " + errorMessage(err));
+        }
+    }
+
+    static synchronized void dispose() {
+        if (jit == null) return;
+        LLVMOrcDisposeLLJIT(jit);
+        jit = null;
+    }
+
+    private static LLVMOrcLLJITRef jit() {
+        if (jit == null) {
+            // Object files are already compiled, the JIT detects the host for its own target machine
+            final LLVMOrcLLJITRef created = new LLVMOrcLLJITRef();
+            final LLVMErrorRef err = LLVMOrcCreateLLJIT(created, LLVMOrcCreateLLJITBuilder());
+            if (err != null) {
+                throw new RuntimeException("Failed to create LLJIT: " + errorMessage(err));
+            }
+            jit = created;
+        }
+        return jit;
+    }
+
+    /**
+     * Consumes {@code err} and returns its message.
+     */
+    static String errorMessage(LLVMErrorRef err) {
+        final BytePointer message = LLVMGetErrorMessage(err);
+        final String description = message.getString();
+        LLVMDisposeErrorMessage(message);
+        return description;
+    }
+}
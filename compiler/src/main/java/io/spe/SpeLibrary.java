@@ -0,0 +1,154 @@
+package io.spe;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.MemorySession;
+import java.lang.foreign.SymbolLookup;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Shared library of implementations compiled ahead of time by {@link SpeAot}, described by a manifest
+ * mapping each implementation to its key. The library is only loaded once an implementation is bound to it,
+ * and stays loaded afterward.
+ */
+final class SpeLibrary {
+    static final String MANIFEST = "META-INF/spe/precompiled.properties";
+    static final String LIBRARY = "library", DIGEST = "digest", OS_NAME = "os.name", OS_ARCH = "os.arch";
+
+    // Libraries by manifest, null if built for another platform
+    private static final Map<URL, SpeLibrary> LIBRARIES = new HashMap<>();
+
+    private final URL url;
+    private final Properties manifest;
+    private SymbolLookup lookup;
+
+    private SpeLibrary(URL url, Properties manifest) {
+        this.url = url;
+        this.manifest = manifest;
+    }
+
+    /**
+     * Computes the key of an implementation compiled ahead of time, changing with its bytecode, the compiler
+     * and the optimization level but independent of the target, so that it can be computed without LLVM.
+     */
+    static String key(Class<?> interfaceType, Class<?> implementationType, List<Method> methods, SpeOptions.OptimizationLevel level) {
+        return SpeCache.key(interfaceType, implementationType, methods, "precompiled", level.name(), SpeCache.staticFields(implementationType));
+    }
+
+    /**
+     * Finds the library holding an up-to-date compilation of {@code implementationType} for {@code interfaceType}
+     * at {@code level}, looking at the manifests of its class loader.
+     *
+     * @return null if no library holds one
+     */
+    static synchronized @Nullable SpeLibrary find(Class<?> interfaceType, Class<?> implementationType, List<Method> methods,
+                                                  SpeOptions.OptimizationLevel level) {
+        final ClassLoader loader = implementationType.getClassLoader();
+        if (loader == null) return null;
+        final List<URL> urls;
+        try {
+            urls = Collections.list(loader.getResources(MANIFEST));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String key = null;
+        for (URL url : urls) {
+            if (!LIBRARIES.containsKey(url)) LIBRARIES.put(url, read(url));
+            final SpeLibrary library = LIBRARIES.get(url);
+            if (library == null) continue;
+            final String precompiledKey = library.key(implementationType);
+            if (precompiledKey == null) continue;
+            // Only computed for implementations listed by a manifest
+            if (key == null) key = key(interfaceType, implementationType, methods, level);
+            if (precompiledKey.equals(key)) return library;
+        }
+        return null;
+    }
+
+    private static SpeLibrary read(URL url) {
+        final Properties manifest = new Properties();
+        try (InputStream stream = url.openStream()) {
+            manifest.load(stream);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + url, e);
+        }
+        final boolean platform = Objects.equals(manifest.getProperty(OS_NAME), System.getProperty(OS_NAME)) &&
+                Objects.equals(manifest.getProperty(OS_ARCH), System.getProperty(OS_ARCH));
+        return platform ? new SpeLibrary(url, manifest) : null;
+    }
+
+    @Nullable String key(Class<?> implementationType) {
+        return manifest.getProperty(implementationType.getName());
+    }
+
+    synchronized long lookup(String name) {
+        if (lookup == null) lookup = SymbolLookup.libraryLookup(path(), MemorySession.global());
+        final MemorySegment symbol = lookup.lookup(name)
+                .orElseThrow(() -> new RuntimeException("Failed to look up symbol " + name + " in " + url));
+        return symbol.address().toRawLongValue();
+    }
+
+    /**
+     * Gets the file of the library next to the manifest, extracted first if packaged in a jar.
+     * <p>
+     * Extracted libraries are named after their digest in the temporary directory, and reused by later runs
+     * as long as their content matches it.
+     */
+    private Path path() {
+        final URL library;
+        try {
+            library = new URL(url, manifest.getProperty(LIBRARY));
+            if (library.getProtocol().equals("file")) return Path.of(library.toURI());
+        } catch (IOException | URISyntaxException e) {
+            throw new IllegalStateException("Invalid library in " + url, e);
+        }
+        final String digest = manifest.getProperty(DIGEST);
+        if (digest == null) throw new IllegalStateException("No library digest in " + url);
+        final Path directory = Path.of(System.getProperty("java.io.tmpdir"), "spe");
+        final Path file = directory.resolve(digest + "-" + manifest.getProperty(LIBRARY));
+        try {
+            if (Files.isRegularFile(file) && digest.equals(digest(file))) return file;
+            Files.createDirectories(directory);
+            final Path temporary = Files.createTempFile(directory, digest, ".tmp");
+            try (InputStream stream = library.openStream()) {
+                Files.copy(stream, temporary, StandardCopyOption.REPLACE_EXISTING);
+                // Other processes may extract the same library at once, each moving a complete file
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot extract " + library, e);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 of {@code file} in hexadecimal, recorded in the manifest to name extracted libraries.
+     */
+    static String digest(Path file) throws IOException {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package io.spe;
+
+import io.spe.compiler.SpeStatus;
+
+import java.lang.foreign.Addressable;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryAddress;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.MemorySession;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+
+/**
+ * Links the downcall handles of generated classes, and the upcall stubs of Java callbacks.
+ */
+final class SpeLinker {
+    private static final Linker LINKER = Linker.nativeLinker();
+    // Status passed to the functions of each thread, see SpeStatus
+    private static final ThreadLocal<MemorySegment> STATUS =
+            ThreadLocal.withInitial(() -> MemorySegment.allocateNative(JAVA_INT, MemorySession.openImplicit()));
+    private static final MethodHandle STATUS_ADDRESS;
+    private static final MethodHandle CHECK_STATUS;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            STATUS_ADDRESS = lookup.findStatic(SpeLinker.class, "status", MethodType.methodType(Addressable.class));
+            CHECK_STATUS = lookup.findStatic(SpeLinker.class, "checkStatus", MethodType.methodType(void.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private SpeLinker() {
+    }
+
+    /**
+     * Creates the handle calling a compiled function.
+     */
+    static MethodHandle downcallHandle(Addressable address, FunctionDescriptor descriptor) {
+        return LINKER.downcallHandle(address, descriptor);
+    }
+
+    /**
+     * Creates the handle calling a compiled function reporting exceptions, of the same type as
+     * {@link #downcallHandle(Addressable, FunctionDescriptor)}: the status is passed along
+     * and {@link ArithmeticException} thrown once it has been set.
+     */
+    static MethodHandle reportingDowncallHandle(Addressable address, FunctionDescriptor descriptor) {
+        final MethodHandle downcall = LINKER.downcallHandle(address, descriptor.appendArgumentLayouts(ADDRESS));
+        final MethodHandle call = MethodHandles.collectArguments(downcall, descriptor.argumentLayouts().size(), STATUS_ADDRESS);
+        final Class<?> returnType = call.type().returnType();
+        return MethodHandles.filterReturnValue(call, returnType == void.class ? CHECK_STATUS :
+                MethodHandles.foldArguments(MethodHandles.identity(returnType), CHECK_STATUS));
+    }
+
+    private static Addressable status() {
+        return STATUS.get();
+    }
+
+    private static void checkStatus() {
+        final MemorySegment status = STATUS.get();
+        if (status.get(JAVA_INT, 0) == SpeStatus.DIVISION_BY_ZERO) {
+            status.set(JAVA_INT, 0, 0);
+            throw new ArithmeticException("/ by zero");
+        }
+    }
+
+    /**
+     * Stores the address of an upcall stub calling {@code callback} in the global at {@code global}.
+     *
+     * @param session the session of the compiled code, freeing the stub along with it
+     */
+    static void linkCallback(MemoryAddress global, Method callback, MemorySession session) {
+        final MethodHandle target;
+        try {
+            callback.setAccessible(true);
+            target = MethodHandles.lookup().unreflect(callback);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access Java callback " + callback, e);
+        }
+        final FunctionDescriptor descriptor = SpeSignature.descriptor(callback.getReturnType(), callback.getParameterTypes());
+        final MemorySegment stub = LINKER.upcallStub(target, descriptor, session);
+        MemorySegment.ofAddress(global, ADDRESS.byteSize(), session).set(ADDRESS, 0, stub);
+    }
+}
@@ -0,0 +1,148 @@
+package io.spe;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the calls of instrumented classes, whose methods forward to another instance
+ * and time one in {@link #LATENCY_SAMPLE_RATE} calls.
+ */
+final class SpeMetrics implements SpeMetricsMXBean {
+    private static final int LATENCY_SAMPLE_RATE = 64;
+    private static final AtomicLong IDS = new AtomicLong();
+    private static final MethodHandle INCREMENT, RECORD, NANO_TIME;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            INCREMENT = lookup.findVirtual(LongAdder.class, "increment", MethodType.methodType(void.class));
+            RECORD = lookup.findStatic(SpeMetrics.class, "record", MethodType.methodType(void.class, AtomicLongArray.class, long.class));
+            NANO_TIME = lookup.findStatic(System.class, "nanoTime", MethodType.methodType(long.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String interfaceName;
+    private final Map<String, LongAdder> counts = new LinkedHashMap<>();
+    private final Map<String, AtomicLongArray> histograms = new LinkedHashMap<>();
+    private final ObjectName name;
+
+    SpeMetrics(Class<?> interfaceType) {
+        this.interfaceName = interfaceType.getName();
+        try {
+            this.name = new ObjectName("io.spe:type=Factory,interface=" + interfaceName + ",id=" + IDS.incrementAndGet());
+        } catch (JMException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Generates a class counting the calls of every method before forwarding them to {@code instance}.
+     */
+    <T> Class<T> generate(Class<T> interfaceType, List<Method> methods, T instance) {
+        final MethodHandle sample = SpeShadow.sampler(LATENCY_SAMPLE_RATE);
+        final List<MethodHandle> invokers = new ArrayList<>(methods.size());
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(interfaceType, MethodHandles.lookup());
+            for (Method method : methods) {
+                final MethodHandle target = lookup.unreflect(method).bindTo(instance);
+                final Class<?>[] types = method.getParameterTypes();
+                final String key = method.getName() + Arrays.stream(types).map(Class::getSimpleName).collect(Collectors.joining(", ", "(", ")"));
+                final LongAdder count = new LongAdder();
+                final AtomicLongArray histogram = new AtomicLongArray(Long.SIZE);
+                counts.put(key, count);
+                histograms.put(key, histogram);
+                final MethodHandle timed = timed(target, MethodHandles.insertArguments(RECORD, 0, histogram));
+                final MethodHandle sampled = MethodHandles.guardWithTest(MethodHandles.dropArguments(sample, 0, types), timed, target);
+                invokers.add(MethodHandles.foldArguments(sampled, MethodHandles.dropArguments(INCREMENT.bindTo(count), 0, types)));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access " + interfaceType, e);
+        }
+        return SpeClassWriter.generateForwarding(interfaceType, "Instrumented", methods, invokers);
+    }
+
+    /**
+     * Wraps {@code target} to pass its start time to {@code record} once it returns.
+     */
+    private static MethodHandle timed(MethodHandle target, MethodHandle record) {
+        final MethodType type = target.type();
+        final Class<?> returnType = type.returnType();
+        final List<Class<?>> parameters = type.parameterList();
+        MethodHandle cleanup;
+        if (returnType == void.class) {
+            // (Throwable, long, parameters...)void
+            cleanup = MethodHandles.dropArguments(record, 0, Throwable.class);
+            cleanup = MethodHandles.dropArguments(cleanup, 2, parameters);
+        } else {
+            // (Throwable, result, long, parameters...)result
+            cleanup = MethodHandles.dropArguments(MethodHandles.identity(returnType), 1, long.class);
+            cleanup = MethodHandles.foldArguments(cleanup, 1, record);
+            cleanup = MethodHandles.dropArguments(cleanup, 0, Throwable.class);
+            cleanup = MethodHandles.dropArguments(cleanup, 3, parameters);
+        }
+        final MethodHandle body = MethodHandles.dropArguments(target, 0, long.class);
+        return MethodHandles.foldArguments(MethodHandles.tryFinally(body, cleanup), NANO_TIME);
+    }
+
+    private static void record(AtomicLongArray histogram, long start) {
+        final long duration = Math.max(System.nanoTime() - start, 1);
+        histogram.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(duration));
+    }
+
+    void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (JMException e) {
+            throw new RuntimeException("Cannot register " + name, e);
+        }
+    }
+
+    void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            throw new RuntimeException("Cannot unregister " + name, e);
+        }
+    }
+
+    @Override
+    public @NotNull String getInterfaceName() {
+        return interfaceName;
+    }
+
+    @Override
+    public @NotNull Map<String, Long> getCallCounts() {
+        final Map<String, Long> result = new LinkedHashMap<>();
+        counts.forEach((key, count) -> result.put(key, count.sum()));
+        return result;
+    }
+
+    @Override
+    public @NotNull Map<String, long[]> getLatencyHistograms() {
+        final Map<String, long[]> result = new LinkedHashMap<>();
+        histograms.forEach((key, histogram) -> {
+            final long[] buckets = new long[histogram.length()];
+            for (int i = 0; i < buckets.length; i++) buckets[i] = histogram.get(i);
+            result.put(key, buckets);
+        });
+        return result;
+    }
+}
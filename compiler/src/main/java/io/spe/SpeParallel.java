@@ -0,0 +1,61 @@
+package io.spe;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Splits ranges into chunks run by the common {@link ForkJoinPool}, each chunk being a separate downcall.
+ */
+final class SpeParallel {
+    // Chunks per worker, leaving room to balance chunks of uneven cost
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private SpeParallel() {
+    }
+
+    static <T, R> R reduce(T instance, long start, long end, long grain,
+                           SpeFactory.RangeFunction<T, R> body, BinaryOperator<R> combiner) {
+        if (grain <= 0) throw new IllegalArgumentException("Grain must be positive: " + grain);
+        if (start > end) throw new IllegalArgumentException("Range start " + start + " is after its end " + end);
+        final long chunk = chunkSize(end - start, grain, ForkJoinPool.getCommonPoolParallelism());
+        return ForkJoinPool.commonPool().invoke(new Chunk<>(instance, start, end, chunk, body, combiner));
+    }
+
+    /**
+     * Gets the size of the chunks, the smallest multiple of {@code grain} giving each worker a few chunks.
+     */
+    static long chunkSize(long length, long grain, int parallelism) {
+        final long chunks = (long) parallelism * CHUNKS_PER_WORKER;
+        final long target = (length + chunks - 1) / chunks;
+        return Math.max(grain, (target + grain - 1) / grain * grain);
+    }
+
+    private static final class Chunk<T, R> extends RecursiveTask<R> {
+        private final T instance;
+        private final long start, end, chunk;
+        private final SpeFactory.RangeFunction<T, R> body;
+        private final BinaryOperator<R> combiner;
+
+        Chunk(T instance, long start, long end, long chunk, SpeFactory.RangeFunction<T, R> body, BinaryOperator<R> combiner) {
+            this.instance = instance;
+            this.start = start;
+            this.end = end;
+            this.chunk = chunk;
+            this.body = body;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected R compute() {
+            if (end - start <= chunk) return body.apply(instance, start, end);
+            // Split on a whole number of chunks, so that chunks start at the same offsets whatever the splits
+            final long chunks = (end - start + chunk - 1) / chunk;
+            final long middle = start + chunks / 2 * chunk;
+            final Chunk<T, R> left = new Chunk<>(instance, start, middle, chunk, body, combiner);
+            left.fork();
+            final R right = new Chunk<>(instance, middle, end, chunk, body, combiner).compute();
+            return combiner.apply(left.join(), right);
+        }
+    }
+}
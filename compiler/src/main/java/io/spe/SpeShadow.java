@@ -0,0 +1,106 @@
+package io.spe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Links shadowed classes, whose methods call the native code and, on a sample of the calls,
+ * the Java implementation to compare their results.
+ */
+final class SpeShadow {
+    private static final MethodHandle SAMPLE;
+    private static final MethodHandle CALL;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SAMPLE = lookup.findStatic(SpeShadow.class, "sample", MethodType.methodType(boolean.class, int.class));
+            CALL = lookup.findVirtual(Shadowed.class, "call", MethodType.methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private SpeShadow() {
+    }
+
+    static <T> Class<T> generate(Class<T> interfaceType, List<Method> methods, T javaInstance, T nativeInstance,
+                                 int sampleRate, SpeDivergence.Listener listener) {
+        final MethodHandle sample = sampler(sampleRate);
+        final List<MethodHandle> invokers = new ArrayList<>(methods.size());
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(interfaceType, MethodHandles.lookup());
+            for (Method method : methods) {
+                final MethodHandle nativeHandle = lookup.unreflect(method).bindTo(nativeInstance);
+                final Class<?>[] types = method.getParameterTypes();
+                // Segments cannot be copied, the Java implementation would write to them a second time
+                if (!Arrays.stream(types).allMatch(SpeVerifier::isGenerated)) {
+                    invokers.add(nativeHandle);
+                    continue;
+                }
+                final Shadowed shadowed = new Shadowed(method, SpeVerifier.invoker(method, javaInstance),
+                        SpeVerifier.invoker(method, nativeInstance), listener);
+                final MethodHandle shadow = CALL.bindTo(shadowed)
+                        .asCollector(Object[].class, types.length)
+                        .asType(nativeHandle.type());
+                invokers.add(MethodHandles.guardWithTest(MethodHandles.dropArguments(sample, 0, types), shadow, nativeHandle));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access " + interfaceType, e);
+        }
+        return SpeClassWriter.generateForwarding(interfaceType, "Shadowed", methods, invokers);
+    }
+
+    /**
+     * Gets a {@code ()boolean} handle returning true on one in {@code sampleRate} calls.
+     */
+    static MethodHandle sampler(int sampleRate) {
+        return MethodHandles.insertArguments(SAMPLE, 0, sampleRate);
+    }
+
+    private static boolean sample(int sampleRate) {
+        return ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    private static final class Shadowed {
+        private final Method method;
+        private final MethodHandle javaHandle, nativeHandle;
+        private final SpeDivergence.Listener listener;
+        private final LongAdder divergences = new LongAdder();
+
+        Shadowed(Method method, MethodHandle javaHandle, MethodHandle nativeHandle, SpeDivergence.Listener listener) {
+            this.method = method;
+            this.javaHandle = javaHandle;
+            this.nativeHandle = nativeHandle;
+            this.listener = listener;
+        }
+
+        /**
+         * Calls the Java implementation on copies of {@code arguments}, then the native code on them.
+         * What the Java implementation throws is rethrown without calling the native code, which only checks integer divisions.
+         */
+        Object call(Object[] arguments) throws Throwable {
+            final Object[] inputs = SpeVerifier.copy(arguments);
+            final Object[] javaArguments = SpeVerifier.copy(arguments);
+            final Object expected = (Object) javaHandle.invokeExact(javaArguments);
+            final Object actual = (Object) nativeHandle.invokeExact(arguments);
+            final boolean resultsDiffer = !Objects.deepEquals(expected, actual);
+            final Object[] expectedArrays = SpeVerifier.arrays(javaArguments);
+            final Object[] actualArrays = SpeVerifier.arrays(arguments);
+            if (resultsDiffer || !Arrays.deepEquals(expectedArrays, actualArrays)) {
+                divergences.increment();
+                listener.onDivergence(new SpeDivergence(method, Arrays.asList(inputs),
+                        resultsDiffer ? expected : expectedArrays, resultsDiffer ? actual : actualArrays, divergences.sum()));
+            }
+            return actual;
+        }
+    }
+}
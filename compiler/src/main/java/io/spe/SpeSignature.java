@@ -1,9 +1,19 @@
 package io.spe;
 
+import org.objectweb.asm.Type;
+
+import java.lang.foreign.Addressable;
 import java.lang.foreign.FunctionDescriptor;
 import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.ValueLayout;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import static java.lang.foreign.ValueLayout.*;
 import static java.util.Map.entry;
@@ -16,6 +26,12 @@ final class SpeSignature {
             entry(int.class, JAVA_INT), entry(long.class, JAVA_LONG),
             entry(float.class, JAVA_FLOAT), entry(double.class, JAVA_DOUBLE));
 
+    private static final Map<Class<?>, ValueLayout> ARRAY_TO_LAYOUT = Map.ofEntries(
+            entry(byte[].class, JAVA_BYTE),
+            entry(char[].class, JAVA_CHAR), entry(short[].class, JAVA_SHORT),
+            entry(int[].class, JAVA_INT), entry(long[].class, JAVA_LONG),
+            entry(float[].class, JAVA_FLOAT), entry(double[].class, JAVA_DOUBLE));
+
     private static final Map<Class<?>, Integer> TYPE_TO_LOAD = Map.ofEntries(
             entry(boolean.class, ILOAD), entry(byte.class, ILOAD),
             entry(char.class, ILOAD), entry(short.class, ILOAD),
@@ -29,9 +45,15 @@ final class SpeSignature {
             entry(int.class, IRETURN), entry(long.class, LRETURN),
             entry(float.class, FRETURN), entry(double.class, DRETURN));
 
+    /**
+     * Gets the descriptor of a compiled function, records being returned through a pointer to their {@link #recordLayout(Class)}.
+     */
     public static FunctionDescriptor descriptor(Class<?> result, Class<?>[] parameterTypes) {
-        final MemoryLayout[] params = Arrays.stream(parameterTypes).map(SpeSignature::toLayout).toArray(MemoryLayout[]::new);
-        if (result == void.class) {
+        MemoryLayout[] params = Arrays.stream(parameterTypes).flatMap(SpeSignature::toLayouts).toArray(MemoryLayout[]::new);
+        if (result.isRecord()) {
+            params = Stream.concat(Stream.of(ADDRESS), Arrays.stream(params)).toArray(MemoryLayout[]::new);
+            return FunctionDescriptor.ofVoid(params);
+        } else if (result == void.class) {
             return FunctionDescriptor.ofVoid(params);
         } else {
             final MemoryLayout returnType = SpeSignature.toLayout(result);
@@ -39,19 +61,108 @@ final class SpeSignature {
         }
     }
 
-    private static MemoryLayout toLayout(Class<?> type) {
+    /**
+     * Descriptor of the method handle returned by {@link java.lang.foreign.Linker#downcallHandle} for {@code descriptor}.
+     */
+    static String downcallDescriptor(FunctionDescriptor descriptor) {
+        final Type[] params = descriptor.argumentLayouts().stream()
+                .map(layout -> layout == ADDRESS ? Type.getType(Addressable.class) : Type.getType(((ValueLayout) layout).carrier()))
+                .toArray(Type[]::new);
+        final Type result = descriptor.returnLayout()
+                .map(layout -> Type.getType(((ValueLayout) layout).carrier()))
+                .orElse(Type.VOID_TYPE);
+        return Type.getMethodDescriptor(result, params);
+    }
+
+    /**
+     * Layouts of the native arguments a parameter is passed as.
+     * <p>
+     * Segments and arrays are passed as their address followed by their size, respectively in bytes and elements.
+     * Records are passed as their components.
+     */
+    private static Stream<MemoryLayout> toLayouts(Class<?> type) {
+        if (type == MemorySegment.class) return Stream.of(ADDRESS, JAVA_LONG);
+        if (type.isArray()) {
+            elementLayout(type);
+            return Stream.of(ADDRESS, JAVA_INT);
+        }
+        if (type.isRecord()) return Arrays.stream(type.getRecordComponents()).map(component -> toLayout(component.getType()));
+        return Stream.of(toLayout(type));
+    }
+
+    /**
+     * Layout of the arguments of a batched method, padded the same way as the LLVM struct it is read as.
+     */
+    static MemoryLayout batchLayout(Class<?>[] parameterTypes) {
+        for (Class<?> parameterType : parameterTypes) {
+            if (!parameterType.isPrimitive())
+                throw new IllegalArgumentException("Batched methods only accept primitives: " + parameterType);
+        }
+        return structLayout(parameterTypes, new String[parameterTypes.length]);
+    }
+
+    /**
+     * Layout of a record of primitives, its members being named after its components.
+     */
+    static StructLayout recordLayout(Class<?> recordType) {
+        final RecordComponent[] components = recordType.getRecordComponents();
+        final Class<?>[] types = new Class<?>[components.length];
+        final String[] names = new String[components.length];
+        for (int i = 0; i < components.length; i++) {
+            types[i] = components[i].getType();
+            names[i] = components[i].getName();
+            if (!types[i].isPrimitive())
+                throw new IllegalArgumentException("Records can only hold primitives: " + recordType);
+        }
+        return structLayout(types, names);
+    }
+
+    /**
+     * Lays out {@code types} like a C struct, padding each member to its natural alignment.
+     */
+    private static StructLayout structLayout(Class<?>[] types, String[] names) {
+        final List<MemoryLayout> members = new ArrayList<>();
+        long size = 0, alignment = 1;
+        for (int i = 0; i < types.length; i++) {
+            MemoryLayout layout = toLayout(types[i]);
+            if (names[i] != null) layout = layout.withName(names[i]);
+            final long padding = -size & (layout.byteAlignment() - 1);
+            if (padding != 0) members.add(MemoryLayout.paddingLayout(padding * 8));
+            members.add(layout);
+            size += padding + layout.byteSize();
+            alignment = Math.max(alignment, layout.byteAlignment());
+        }
+        final long padding = -size & (alignment - 1);
+        if (padding != 0) members.add(MemoryLayout.paddingLayout(padding * 8));
+        return MemoryLayout.structLayout(members.toArray(MemoryLayout[]::new));
+    }
+
+    static MemoryLayout toLayout(Class<?> type) {
         final MemoryLayout layout = TYPE_TO_LAYOUT.get(type);
         if (layout == null) throw new IllegalArgumentException("Unsupported type: " + type);
         return layout;
     }
 
+    static ValueLayout elementLayout(Class<?> arrayType) {
+        final ValueLayout layout = ARRAY_TO_LAYOUT.get(arrayType);
+        if (layout == null) throw new IllegalArgumentException("Unsupported array type: " + arrayType);
+        return layout;
+    }
+
     static int loadOpcode(Class<?> type) {
+        if (!type.isPrimitive()) return ALOAD;
         final Integer opcode = TYPE_TO_LOAD.get(type);
         if (opcode == null) throw new IllegalArgumentException("Unsupported type: " + type);
         return opcode;
     }
 
+    static int storeOpcode(Class<?> type) {
+        // xSTORE opcodes follow the same order as xLOAD
+        return loadOpcode(type) + (ISTORE - ILOAD);
+    }
+
     static int returnOpcode(Class<?> type) {
+        if (!type.isPrimitive()) return ARETURN;
         final Integer opcode = TYPE_TO_RETURN.get(type);
         if (opcode == null) throw new IllegalArgumentException("Unsupported type: " + type);
         return opcode;
@@ -0,0 +1,73 @@
+package io.spe;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.llvm.LLVM.LLVMPassBuilderOptionsRef;
+import org.bytedeco.llvm.LLVM.LLVMTargetMachineRef;
+import org.bytedeco.llvm.LLVM.LLVMTargetRef;
+
+import static org.bytedeco.llvm.global.LLVM.*;
+
+/**
+ * Machine code generation settings derived from {@link SpeOptions}.
+ */
+record SpeTarget(String triple, String cpu, String features, SpeOptions.OptimizationLevel optimizationLevel) {
+    static {
+        // Initialize LLVM components, once an implementation is compiled or loaded in the JIT
+        LLVMInitializeCore(LLVMGetGlobalPassRegistry());
+        LLVMLinkInMCJIT();
+        LLVMInitializeNativeAsmPrinter();
+        LLVMInitializeNativeAsmParser();
+        LLVMInitializeNativeTarget();
+    }
+
+    private static final String HOST_TRIPLE = message(LLVMGetDefaultTargetTriple());
+    private static final String HOST_CPU = message(LLVMGetHostCPUName());
+    private static final String HOST_FEATURES = message(LLVMGetHostCPUFeatures());
+
+    static SpeTarget of(SpeOptions options) {
+        return options.hostCpu() ?
+                new SpeTarget(HOST_TRIPLE, HOST_CPU, HOST_FEATURES, options.optimizationLevel()) :
+                new SpeTarget(HOST_TRIPLE, "", "", options.optimizationLevel());
+    }
+
+    /**
+     * Gets the new pass manager pipeline matching the optimization level.
+     */
+    String passes() {
+        return "default<" + optimizationLevel.name() + ">";
+    }
+
+    LLVMPassBuilderOptionsRef createPassBuilderOptions() {
+        final boolean vectorize = optimizationLevel.compareTo(SpeOptions.OptimizationLevel.O2) >= 0;
+        LLVMPassBuilderOptionsRef options = LLVMCreatePassBuilderOptions();
+        LLVMPassBuilderOptionsSetLoopVectorization(options, vectorize ? 1 : 0);
+        LLVMPassBuilderOptionsSetSLPVectorization(options, vectorize ? 1 : 0);
+        LLVMPassBuilderOptionsSetLoopInterleaving(options, vectorize ? 1 : 0);
+        LLVMPassBuilderOptionsSetLoopUnrolling(options, optimizationLevel != SpeOptions.OptimizationLevel.O0 ? 1 : 0);
+        return options;
+    }
+
+    LLVMTargetMachineRef createMachine() {
+        final BytePointer error = new BytePointer();
+        LLVMTargetRef target = new LLVMTargetRef();
+        if (LLVMGetTargetFromTriple(new BytePointer(triple), target, error) != 0) {
+            final String message = error.getString();
+            LLVMDisposeMessage(error);
+            throw new RuntimeException("Failed to find target " + triple + ": " + message);
+        }
+        final int codeGenLevel = switch (optimizationLevel) {
+            case O0 -> LLVMCodeGenLevelNone;
+            case O1 -> LLVMCodeGenLevelLess;
+            case O2 -> LLVMCodeGenLevelDefault;
+            case O3 -> LLVMCodeGenLevelAggressive;
+        };
+        return LLVMCreateTargetMachine(target, triple, cpu, features,
+                codeGenLevel, LLVMRelocPIC, LLVMCodeModelDefault);
+    }
+
+    private static String message(BytePointer pointer) {
+        final String value = pointer.getString();
+        LLVMDisposeMessage(pointer);
+        return value;
+    }
+}
@@ -0,0 +1,92 @@
+package io.spe;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Links tiered classes, whose methods go through a {@link MutableCallSite} targeting the Java implementation
+ * until the native code is ready.
+ */
+final class SpeTiered {
+    // Background compilations block on LLVM, keep them off the common pool
+    static final Executor EXECUTOR = executor();
+
+    private SpeTiered() {
+    }
+
+    private static Executor executor() {
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(), task -> {
+            final Thread thread = new Thread(task, "spe-tiered");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    static <T> SpeTieredFactory<T> create(Class<T> interfaceType, Class<? extends T> implementationType,
+                                          CompletableFuture<SpeFactory<T>> compilation) {
+        final List<Method> methods = Arrays.stream(interfaceType.getMethods()).filter(method -> (method.getModifiers() & Modifier.ABSTRACT) != 0).toList();
+        final MutableCallSite[] sites = new MutableCallSite[methods.size()];
+        final List<MethodHandle> invokers = new ArrayList<>(methods.size());
+        final MethodHandles.Lookup lookup;
+        try {
+            lookup = MethodHandles.privateLookupIn(interfaceType, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access " + interfaceType, e);
+        }
+        try {
+            final var constructor = implementationType.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            final T javaInstance = constructor.newInstance();
+            for (int i = 0; i < sites.length; i++) {
+                sites[i] = new MutableCallSite(lookup.unreflect(methods.get(i)).bindTo(javaInstance));
+                invokers.add(sites[i].dynamicInvoker());
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+        final Class<T> generated = SpeClassWriter.generateForwarding(interfaceType, "Tiered", methods, invokers);
+
+        final CompletableFuture<SpeFactory<T>> linked = compilation.thenApply(factory -> {
+            // Retarget every site before a single safepoint, so compiled callers are only invalidated once
+            final T nativeInstance = factory.create();
+            try {
+                for (int i = 0; i < sites.length; i++) {
+                    sites[i].setTarget(lookup.unreflect(methods.get(i)).bindTo(nativeInstance));
+                }
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+            MutableCallSite.syncAll(sites);
+            return factory;
+        });
+        return new TieredFactory<>(generated, linked);
+    }
+
+    private record TieredFactory<T>(Class<T> type, CompletableFuture<SpeFactory<T>> nativeFactory) implements SpeTieredFactory<T> {
+        @Override
+        public @NotNull T create() {
+            try {
+                return type.getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
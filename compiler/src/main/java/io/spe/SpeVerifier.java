@@ -0,0 +1,304 @@
+package io.spe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * Runs native code and the Java implementation on the same random and boundary inputs, and shrinks the failing ones.
+ */
+final class SpeVerifier {
+    private static final int MAX_ARRAY_LENGTH = 16;
+    // Bounds the inputs tried while shrinking a mismatch
+    private static final int SHRINK_ATTEMPTS = 10_000;
+    private static final long[] INTEGER_BOUNDARIES = {0, 1, -1, 2, -2, Byte.MIN_VALUE, Byte.MAX_VALUE,
+            Short.MIN_VALUE, Short.MAX_VALUE, Character.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE};
+    private static final double[] FLOAT_BOUNDARIES = {0.0, -0.0, 1.0, -1.0, 0.5, Double.NaN,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Float.MIN_VALUE, Float.MIN_NORMAL, Float.MAX_VALUE,
+            Double.MIN_VALUE, Double.MIN_NORMAL, Double.MAX_VALUE, 0x1p31, 0x1p63};
+
+    // Canonical constructors of the generated records
+    private static final ClassValue<Constructor<?>> CONSTRUCTORS = new ClassValue<>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> type) {
+            final Class<?>[] types = Arrays.stream(type.getRecordComponents()).map(RecordComponent::getType).toArray(Class<?>[]::new);
+            try {
+                final Constructor<?> constructor = type.getDeclaredConstructor(types);
+                constructor.setAccessible(true);
+                return constructor;
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("No canonical constructor in " + type.getName(), e);
+            }
+        }
+    };
+
+    private SpeVerifier() {
+    }
+
+    static <T> SpeVerification verify(Class<T> interfaceType, T javaInstance, T nativeInstance, long cases) {
+        final List<SpeVerification.Mismatch> mismatches = new ArrayList<>();
+        final List<Method> skipped = new ArrayList<>();
+        long total = 0;
+        for (Method method : interfaceType.getMethods()) {
+            if (!Modifier.isAbstract(method.getModifiers())) continue;
+            final Class<?>[] types = method.getParameterTypes();
+            if (!Arrays.stream(types).allMatch(SpeVerifier::isGenerated)) {
+                skipped.add(method);
+                continue;
+            }
+            final MethodHandle javaHandle = invoker(method, javaInstance);
+            final MethodHandle nativeHandle = invoker(method, nativeInstance);
+            // Seeded by the method, so that a report can be reproduced
+            final SplittableRandom random = new SplittableRandom(method.toGenericString().hashCode());
+            Object[] failing = null;
+            long failures = 0;
+            for (long i = 0; i < cases; i++) {
+                final Object[] arguments = new Object[types.length];
+                for (int k = 0; k < types.length; k++) arguments[k] = generate(types[k], random);
+                final Outcome outcome = run(javaHandle, nativeHandle, arguments);
+                if (outcome == null) continue;
+                total++;
+                if (outcome.matches()) continue;
+                failures++;
+                if (failing == null) failing = arguments;
+            }
+            if (failing == null) continue;
+            final Object[] shrunk = shrink(javaHandle, nativeHandle, failing);
+            final Outcome outcome = Objects.requireNonNull(run(javaHandle, nativeHandle, shrunk));
+            final boolean resultsDiffer = !Objects.deepEquals(outcome.expected(), outcome.actual());
+            mismatches.add(new SpeVerification.Mismatch(method, Arrays.asList(shrunk),
+                    resultsDiffer ? outcome.expected() : outcome.expectedArrays(),
+                    resultsDiffer ? outcome.actual() : outcome.actualArrays(), failures));
+        }
+        return new SpeVerification(total, mismatches, skipped);
+    }
+
+    static MethodHandle invoker(Method method, Object instance) {
+        try {
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method).bindTo(instance)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot access " + method, e);
+        }
+    }
+
+    /**
+     * Calls both sides with their own copy of {@code arguments}.
+     *
+     * @return null if the Java implementation threw, native code only checking integer divisions
+     */
+    private static Outcome run(MethodHandle javaHandle, MethodHandle nativeHandle, Object[] arguments) {
+        final Object[] javaArguments = copy(arguments);
+        final Object expected;
+        try {
+            expected = (Object) javaHandle.invokeExact(javaArguments);
+        } catch (Throwable e) {
+            return null;
+        }
+        final Object[] nativeArguments = copy(arguments);
+        final Object actual;
+        try {
+            actual = (Object) nativeHandle.invokeExact(nativeArguments);
+        } catch (Throwable e) {
+            throw new RuntimeException("Native call failed", e);
+        }
+        return new Outcome(expected, actual, arrays(javaArguments), arrays(nativeArguments));
+    }
+
+    private record Outcome(Object expected, Object actual, Object[] expectedArrays, Object[] actualArrays) {
+        boolean matches() {
+            // Floating-point values are equal if their bits are, all NaN being equal
+            return Objects.deepEquals(expected, actual) && Arrays.deepEquals(expectedArrays, actualArrays);
+        }
+    }
+
+    static Object[] copy(Object[] arguments) {
+        final Object[] copy = arguments.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] != null && copy[i].getClass().isArray()) {
+                final int length = Array.getLength(copy[i]);
+                final Object array = Array.newInstance(copy[i].getClass().getComponentType(), length);
+                System.arraycopy(copy[i], 0, array, 0, length);
+                copy[i] = array;
+            }
+        }
+        return copy;
+    }
+
+    static Object[] arrays(Object[] arguments) {
+        return Arrays.stream(arguments).filter(argument -> argument != null && argument.getClass().isArray()).toArray();
+    }
+
+    static boolean isGenerated(Class<?> type) {
+        if (type.isPrimitive()) return true;
+        if (type.isArray()) return type.getComponentType().isPrimitive() && type.getComponentType() != boolean.class;
+        if (type.isRecord()) return Arrays.stream(type.getRecordComponents()).allMatch(component -> component.getType().isPrimitive());
+        return false;
+    }
+
+    private static Object generate(Class<?> type, SplittableRandom random) {
+        if (type.isArray()) {
+            final int length = random.nextInt(MAX_ARRAY_LENGTH + 1);
+            final Object array = Array.newInstance(type.getComponentType(), length);
+            for (int i = 0; i < length; i++) Array.set(array, i, generate(type.getComponentType(), random));
+            return array;
+        }
+        if (type.isRecord()) {
+            final Class<?>[] types = CONSTRUCTORS.get(type).getParameterTypes();
+            final Object[] values = new Object[types.length];
+            for (int i = 0; i < types.length; i++) values[i] = generate(types[i], random);
+            return record(type, values);
+        }
+        if (type == boolean.class) return random.nextBoolean();
+        // A quarter of the values are boundaries, then small values and any bits as often
+        final boolean boundary = random.nextInt(4) == 0;
+        if (type == float.class || type == double.class) {
+            final double value;
+            if (boundary) value = FLOAT_BOUNDARIES[random.nextInt(FLOAT_BOUNDARIES.length)];
+            else if (random.nextBoolean()) value = random.nextInt(-4000, 4001) / 4.0;
+            else if (type == float.class) value = Float.intBitsToFloat(random.nextInt());
+            else value = Double.longBitsToDouble(random.nextLong());
+            return box(type, value);
+        }
+        final long value;
+        if (boundary) value = INTEGER_BOUNDARIES[random.nextInt(INTEGER_BOUNDARIES.length)];
+        else if (random.nextBoolean()) value = random.nextInt(-100, 101);
+        else value = random.nextLong();
+        if (type == long.class) return value;
+        return box(type, (int) value);
+    }
+
+    /**
+     * Replaces arguments by simpler values as long as the input keeps failing.
+     */
+    private static Object[] shrink(MethodHandle javaHandle, MethodHandle nativeHandle, Object[] arguments) {
+        int attempts = 0;
+        boolean progress = true;
+        while (progress && attempts < SHRINK_ATTEMPTS) {
+            progress = false;
+            for (int k = 0; k < arguments.length && !progress; k++) {
+                for (Object candidate : simpler(arguments[k])) {
+                    if (++attempts > SHRINK_ATTEMPTS) break;
+                    final Object[] trial = arguments.clone();
+                    trial[k] = candidate;
+                    final Outcome outcome = run(javaHandle, nativeHandle, trial);
+                    if (outcome != null && !outcome.matches()) {
+                        arguments = trial;
+                        progress = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * Gets values strictly simpler than {@code value}, shorter arrays and numbers closer to zero.
+     */
+    private static List<Object> simpler(Object value) {
+        final List<Object> candidates = new ArrayList<>();
+        if (value.getClass().isArray()) {
+            final int length = Array.getLength(value);
+            if (length == 0) return candidates;
+            candidates.add(slice(value, 0, length - 1));
+            candidates.add(slice(value, 1, length));
+            for (int i = 0; i < length; i++) {
+                for (Object element : simpler(Array.get(value, i))) {
+                    final Object array = slice(value, 0, length);
+                    Array.set(array, i, element);
+                    candidates.add(array);
+                }
+            }
+            return candidates;
+        }
+        if (value instanceof Record record) {
+            final RecordComponent[] components = record.getClass().getRecordComponents();
+            final Object[] values = new Object[components.length];
+            for (int i = 0; i < components.length; i++) values[i] = component(record, components[i]);
+            for (int i = 0; i < components.length; i++) {
+                for (Object component : simpler(values[i])) {
+                    final Object[] copy = values.clone();
+                    copy[i] = component;
+                    candidates.add(record(record.getClass(), copy));
+                }
+            }
+            return candidates;
+        }
+        if (value instanceof Boolean bool) {
+            if (bool) candidates.add(false);
+            return candidates;
+        }
+        final double number = number(value);
+        final Class<?> type = MethodType.methodType(value.getClass()).unwrap().returnType();
+        for (double candidate : new double[]{0, 1, -1, Math.rint(number), number / 2, -number, number - Math.signum(number)}) {
+            final Object boxed = box(type, candidate);
+            if (complexity(boxed) < complexity(value) && !candidates.contains(boxed)) candidates.add(boxed);
+        }
+        return candidates;
+    }
+
+    private static double complexity(Object value) {
+        final double number = number(value);
+        if (Double.isNaN(number)) return Double.POSITIVE_INFINITY;
+        if (Double.isInfinite(number)) return Double.MAX_VALUE;
+        final boolean negative = number < 0 || Double.doubleToRawLongBits(number) == Long.MIN_VALUE;
+        return Math.abs(number) + (negative ? 0.5 : 0) + (number != Math.rint(number) ? 0.25 : 0);
+    }
+
+    private static double number(Object value) {
+        if (value instanceof Character character) return character;
+        return ((Number) value).doubleValue();
+    }
+
+    private static Object box(Class<?> type, double value) {
+        if (type == double.class) return value;
+        if (type == float.class) return (float) value;
+        if (type == long.class) return (long) value;
+        return box(type, (int) value);
+    }
+
+    private static Object box(Class<?> type, int value) {
+        if (type == int.class) return value;
+        if (type == short.class) return (short) value;
+        if (type == char.class) return (char) value;
+        if (type == byte.class) return (byte) value;
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+
+    private static Object slice(Object array, int from, int to) {
+        final Object slice = Array.newInstance(array.getClass().getComponentType(), to - from);
+        System.arraycopy(array, from, slice, 0, to - from);
+        return slice;
+    }
+
+    private static Object component(Record record, RecordComponent component) {
+        try {
+            final Method accessor = component.getAccessor();
+            accessor.setAccessible(true);
+            return accessor.invoke(record);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot read " + component, e);
+        }
+    }
+
+    private static Object record(Class<?> type, Object[] values) {
+        try {
+            return CONSTRUCTORS.get(type).newInstance(values);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create " + type.getName(), e);
+        }
+    }
+}
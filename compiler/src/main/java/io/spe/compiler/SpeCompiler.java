@@ -1,197 +1,1999 @@
 package io.spe.compiler;
 
+import io.spe.Batched;
+import io.spe.FastMath;
+import io.spe.JavaCallback;
+import org.bytedeco.javacpp.BytePointer;
 import org.bytedeco.javacpp.Pointer;
 import org.bytedeco.javacpp.PointerPointer;
 import org.bytedeco.llvm.LLVM.*;
+import org.bytedeco.llvm.global.LLVM;
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.*;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.util.Textifier;
+import org.objectweb.asm.util.TraceMethodVisitor;
 
 import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.nio.ByteOrder;
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.bytedeco.llvm.global.LLVM.*;
 import static org.objectweb.asm.Opcodes.*;
 
 public final class SpeCompiler {
-    public static void compile(LLVMModuleRef module, LLVMBuilderRef builder, Class<?> type, List<Method> methods) throws IOException {
-        new SpeCompiler(module, builder, type, methods);
+    /**
+     * Compiles {@code methods} of {@code type} into {@code module}, using the context of the module only.
+     *
+     * @param prefix      prepended to the name of every emitted function, see {@link SpeSymbols#symbol(String, Method)}
+     * @param bytecodeMap appended the IR emitted by every bytecode instruction, null to skip it
+     */
+    public static void compile(LLVMModuleRef module, LLVMBuilderRef builder, Class<?> type, List<Method> methods, String prefix,
+                               @Nullable StringBuilder bytecodeMap) throws IOException {
+        new SpeCompiler(module, builder, type, null, methods, prefix, bytecodeMap);
+    }
+
+    /**
+     * Compiles {@code methods} of {@code instance}, specialized for the values of its final fields.
+     * <p>
+     * Primitive fields become constants and primitive arrays internal constant globals,
+     * the contents of arrays being captured at compilation.
+     */
+    public static void compile(LLVMModuleRef module, LLVMBuilderRef builder, Object instance, List<Method> methods, String prefix,
+                               @Nullable StringBuilder bytecodeMap) throws IOException {
+        new SpeCompiler(module, builder, instance.getClass(), instance, methods, prefix, bytecodeMap);
     }
 
     private final LLVMModuleRef module;
+    private final LLVMContextRef context;
     private final LLVMBuilderRef builder;
     private final Class<?> type;
+    private final Object instance;
     private final List<Method> methods;
+    private final String prefix;
+    private final StringBuilder bytecodeMap;
+    // Values of the fields read so far, by name
+    private final Map<String, LLVMValueRef> fields = new HashMap<>();
+    // Globals of the static fields accessed so far, by name
+    private final Map<String, StaticField> staticFields = new HashMap<>();
+    // Record classes by internal name
+    private final Map<String, Class<?>> records = new HashMap<>();
+    // Globals holding the upcall stubs of Java callbacks, by name and descriptor
+    private final Map<String, LLVMValueRef> callbacks = new HashMap<>();
+    // Methods of the implementation by name and descriptor
+    private final Map<String, MethodNode> classMethods = new HashMap<>();
+    // Element types of the arrays the implementation may write, whose final fields cannot be read-only
+    private final Set<Type> writtenArrays = new HashSet<>();
+    // Methods by name and descriptor whose functions take a status, see SpeStatus
+    private final Set<String> reporting;
+    // Fast-math functions by signature and instruction
+    private final Map<String, LLVMValueRef> fastMathFunctions = new HashMap<>();
+    // Functions declared for methods, compiled once dequeued from pending
+    private final Map<String, LLVMValueRef> functions = new HashMap<>();
+    private final ArrayDeque<MethodNode> pending = new ArrayDeque<>();
 
-    private SpeCompiler(LLVMModuleRef module, LLVMBuilderRef builder, Class<?> type, List<Method> methods) throws IOException {
+    private SpeCompiler(LLVMModuleRef module, LLVMBuilderRef builder, Class<?> type, Object instance, List<Method> methods, String prefix,
+                        StringBuilder bytecodeMap) throws IOException {
         this.module = module;
+        this.context = LLVMGetModuleContext(module);
         this.builder = builder;
         this.type = type;
+        this.instance = instance;
         this.methods = methods;
+        this.prefix = prefix;
+        this.bytecodeMap = bytecodeMap;
 
         ClassReader cr = new ClassReader(type.getName());
-        var visitor = new SpeClassVisitor();
-        cr.accept(visitor, ClassReader.SKIP_DEBUG);
+        ClassNode classNode = new ClassNode();
+        cr.accept(classNode, ClassReader.SKIP_DEBUG);
+        for (MethodNode method : classNode.methods) {
+            classMethods.put(method.name + method.desc, method);
+            for (AbstractInsnNode instruction : method.instructions) {
+                final int opcode = instruction.getOpcode();
+                if (opcode >= IASTORE && opcode <= SASTORE && opcode != AASTORE) {
+                    writtenArrays.add(arrayElementType(opcode - IASTORE));
+                } else if (instruction instanceof MethodInsnNode call && call.owner.startsWith(VECTOR_PACKAGE) && call.name.equals("intoArray")) {
+                    writtenArrays.add(Type.getArgumentTypes(call.desc)[0].getElementType());
+                }
+            }
+        }
+        reporting = SpeStatus.reporting(classMethods, classNode.name);
+        for (Method callback : SpeSymbols.callbacks(type)) {
+            final LLVMTypeRef pointerType = LLVMPointerType(callbackType(Type.getMethodDescriptor(callback)), 0);
+            final LLVMValueRef global = LLVMAddGlobal(module, pointerType, SpeSymbols.callbackSymbol(prefix, callback));
+            LLVMSetInitializer(global, LLVMConstPointerNull(pointerType));
+            callbacks.put(callback.getName() + Type.getMethodDescriptor(callback), global);
+        }
+
+        for (Method method : methods) {
+            final MethodNode node = classMethods.get(method.getName() + Type.getMethodDescriptor(method));
+            if (node == null) throw new IllegalArgumentException(type.getName() + " does not declare " + method);
+            declare(node, SpeSymbols.symbol(prefix, method), true);
+        }
+        // Compile the entry points, then every helper they reach
+        while (!pending.isEmpty()) {
+            final MethodNode node = pending.poll();
+            final SpeMethodVisitor visitor = new SpeMethodVisitor(node, functions.get(node.name + node.desc), fastMathFlags(node));
+            if (bytecodeMap != null) trace(node, visitor);
+            else node.accept(visitor);
+        }
+
+        for (Method method : methods) {
+            if (method.isAnnotationPresent(Batched.class)) compileBatch(method);
+        }
     }
 
-    private final class SpeClassVisitor extends ClassVisitor {
-        SpeClassVisitor() {
-            super(Opcodes.ASM9);
+    /**
+     * Visits the instructions of {@code node} one at a time, appending each of them to the bytecode map
+     * followed by the IR it emitted.
+     */
+    private void trace(MethodNode node, MethodVisitor visitor) {
+        final Textifier textifier = new Textifier();
+        final TraceMethodVisitor printer = new TraceMethodVisitor(textifier);
+        bytecodeMap.append(node.name).append(node.desc).append('\n');
+        for (AbstractInsnNode instruction : node.instructions) {
+            final LLVMBasicBlockRef block = LLVMGetInsertBlock(builder);
+            final LLVMValueRef last = LLVMGetLastInstruction(block);
+            instruction.accept(visitor);
+            final int printed = textifier.getText().size();
+            instruction.accept(printer);
+            for (Object text : textifier.getText().subList(printed, textifier.getText().size())) bytecodeMap.append(text);
+            appendInstructions(last != null ? LLVMGetNextInstruction(last) : LLVMGetFirstInstruction(block));
+            // Jumps and labels continue in another block
+            final LLVMBasicBlockRef current = LLVMGetInsertBlock(builder);
+            if (!current.equals(block)) appendInstructions(LLVMGetFirstInstruction(current));
         }
+        visitor.visitEnd();
+        bytecodeMap.append('\n');
+    }
 
-        @Override
-        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-            for (var method : methods) {
-                if (method.getName().equals(name) && Type.getMethodDescriptor(method).equals(descriptor))
-                    return new SpeMethodVisitor(name, descriptor, super.visitMethod(access, name, descriptor, signature, exceptions));
-            }
-            return null;
+    private void appendInstructions(LLVMValueRef instruction) {
+        for (; instruction != null; instruction = LLVMGetNextInstruction(instruction)) {
+            final BytePointer text = LLVMPrintValueToString(instruction);
+            bytecodeMap.append("    ").append(text.getString()).append('\n');
+            LLVMDisposeMessage(text);
         }
     }
 
+    private LLVMTypeRef callbackType(String descriptor) {
+        final LLVMTypeRef[] params = Arrays.stream(Type.getArgumentTypes(descriptor)).map(this::jvmTypeToLLVM).toArray(LLVMTypeRef[]::new);
+        return LLVMFunctionType(jvmTypeToLLVM(Type.getReturnType(descriptor)), new PointerPointer<>(params.length).put(params), params.length, 0);
+    }
+
+    /**
+     * Emits {@code void name$batch(void *input, void *output, long count)}, calling the compiled method
+     * for each tuple of arguments stored in {@code input} and storing its results in {@code output}.
+     * <p>
+     * Batches of methods reporting exceptions take the status of {@link SpeStatus} as a fourth parameter.
+     */
+    private void compileBatch(Method method) {
+        if (!method.getReturnType().isPrimitive() || method.getReturnType() == void.class)
+            throw new IllegalArgumentException("Batched methods must return a primitive: " + method);
+        final LLVMValueRef function = LLVMGetNamedFunction(module, SpeSymbols.symbol(prefix, method));
+        final LLVMTypeRef functionType = LLVMGlobalGetValueType(function);
+        final Type[] argumentTypes = Type.getArgumentTypes(method);
+        final Type returnType = Type.getReturnType(method);
+        final LLVMTypeRef[] fieldTypes = Arrays.stream(argumentTypes).map(argumentType -> {
+            if (argumentType.getSort() == Type.OBJECT || argumentType.getSort() == Type.ARRAY)
+                throw new IllegalArgumentException("Batched methods only accept primitives: " + method);
+            return memoryType(argumentType);
+        }).toArray(LLVMTypeRef[]::new);
+        final LLVMTypeRef tupleType = LLVMStructTypeInContext(context, new PointerPointer<>(fieldTypes.length).put(fieldTypes), fieldTypes.length, 0);
+        final LLVMTypeRef resultType = memoryType(returnType);
+
+        final LLVMTypeRef pointerType = LLVMPointerType(LLVMInt8TypeInContext(context), 0);
+        // Reporting methods report through the batch, which stops at the first tuple throwing
+        final boolean reports = reporting.contains(method.getName() + Type.getMethodDescriptor(method));
+        final LLVMTypeRef[] params = reports ?
+                new LLVMTypeRef[]{pointerType, pointerType, LLVMInt64TypeInContext(context), LLVMPointerType(LLVMInt32TypeInContext(context), 0)} :
+                new LLVMTypeRef[]{pointerType, pointerType, LLVMInt64TypeInContext(context)};
+        final LLVMTypeRef batchType = LLVMFunctionType(LLVMVoidTypeInContext(context), new PointerPointer<>(params.length).put(params), params.length, 0);
+        final LLVMValueRef batch = LLVMAddFunction(module, SpeSymbols.batchSymbol(prefix, method), batchType);
+        LLVMSetFunctionCallConv(batch, LLVMCCallConv);
+
+        final LLVMBasicBlockRef entry = LLVMAppendBasicBlockInContext(context, batch, "entry");
+        final LLVMBasicBlockRef loop = LLVMAppendBasicBlockInContext(context, batch, "loop");
+        final LLVMBasicBlockRef exit = LLVMAppendBasicBlockInContext(context, batch, "exit");
+        LLVMPositionBuilderAtEnd(builder, entry);
+        final LLVMValueRef input = LLVMBuildBitCast(builder, LLVMGetParam(batch, 0), LLVMPointerType(tupleType, 0), "input");
+        final LLVMValueRef output = LLVMBuildBitCast(builder, LLVMGetParam(batch, 1), LLVMPointerType(resultType, 0), "output");
+        final LLVMValueRef count = LLVMGetParam(batch, 2);
+        final LLVMValueRef empty = LLVMBuildICmp(builder, LLVMIntSLE, count, LLVMConstInt(LLVMInt64TypeInContext(context), 0, 0), "empty");
+        LLVMBuildCondBr(builder, empty, exit, loop);
+
+        LLVMPositionBuilderAtEnd(builder, loop);
+        final LLVMValueRef index = LLVMBuildPhi(builder, LLVMInt64TypeInContext(context), "index");
+        final LLVMValueRef tuple = LLVMBuildInBoundsGEP2(builder, tupleType, input, new PointerPointer<>(1).put(index), 1, "tuple");
+        final LLVMValueRef[] arguments = new LLVMValueRef[argumentTypes.length + (reports ? 1 : 0)];
+        if (reports) arguments[argumentTypes.length] = LLVMGetParam(batch, 3);
+        for (int i = 0; i < argumentTypes.length; i++) {
+            final LLVMValueRef field = LLVMBuildStructGEP2(builder, tupleType, tuple, i, "field");
+            final LLVMValueRef value = LLVMBuildLoad2(builder, fieldTypes[i], field, "argument");
+            arguments[i] = argumentTypes[i].getSort() == Type.BOOLEAN ?
+                    LLVMBuildICmp(builder, LLVMIntNE, value, LLVMConstInt(LLVMInt8TypeInContext(context), 0, 0), "boolean") : value;
+        }
+        LLVMValueRef result = LLVMBuildCall2(builder, functionType, function, new PointerPointer<>(arguments.length).put(arguments), arguments.length, "result");
+        if (reports) {
+            final LLVMValueRef status = LLVMBuildLoad2(builder, LLVMInt32TypeInContext(context), LLVMGetParam(batch, 3), "status");
+            final LLVMBasicBlockRef returned = LLVMAppendBasicBlockInContext(context, batch, "returned");
+            LLVMBuildCondBr(builder, LLVMBuildICmp(builder, LLVMIntNE, status, LLVMConstNull(LLVMInt32TypeInContext(context)), "thrown"), exit, returned);
+            LLVMPositionBuilderAtEnd(builder, returned);
+        }
+        if (returnType.getSort() == Type.BOOLEAN) result = LLVMBuildZExt(builder, result, LLVMInt8TypeInContext(context), "boolean");
+        final LLVMValueRef resultPointer = LLVMBuildInBoundsGEP2(builder, resultType, output, new PointerPointer<>(1).put(index), 1, "output");
+        LLVMBuildStore(builder, result, resultPointer);
+        final LLVMValueRef next = LLVMBuildAdd(builder, index, LLVMConstInt(LLVMInt64TypeInContext(context), 1, 0), "next");
+        final LLVMBasicBlockRef latch = LLVMGetInsertBlock(builder);
+        LLVMBuildCondBr(builder, LLVMBuildICmp(builder, LLVMIntEQ, next, count, "done"), exit, loop);
+        LLVMAddIncoming(index, new PointerPointer<>(2).put(LLVMConstInt(LLVMInt64TypeInContext(context), 0, 0), next),
+                new PointerPointer<>(2).put(entry, latch), 2);
+
+        LLVMPositionBuilderAtEnd(builder, exit);
+        LLVMBuildRetVoid(builder);
+    }
+
+    private LLVMValueRef declare(MethodNode node, String name, boolean external) {
+        final Type[] argumentTypes = Type.getArgumentTypes(node.desc);
+        // Exported functions return records through a pointer, LLVM aggregates not following the C ABI of structs
+        final boolean indirectReturn = external && isRecord(Type.getReturnType(node.desc));
+        final LLVMTypeRef returnType = indirectReturn ? LLVMVoidTypeInContext(context) : jvmTypeToLLVM(Type.getReturnType(node.desc));
+        var params = Stream.concat(indirectReturn ? Stream.of(LLVMPointerType(LLVMInt8TypeInContext(context), 0)) : Stream.empty(),
+                Arrays.stream(argumentTypes).flatMap(argumentType -> Arrays.stream(nativeTypes(argumentType)))).toArray(LLVMTypeRef[]::new);
+        if (reporting.contains(node.name + node.desc)) {
+            params = Arrays.copyOf(params, params.length + 1);
+            params[params.length - 1] = LLVMPointerType(LLVMInt32TypeInContext(context), 0);
+        }
+        final LLVMTypeRef functionType = LLVMFunctionType(returnType, new PointerPointer<>(params.length).put(params), params.length, 0);
+        final LLVMValueRef function = LLVMAddFunction(module, name, functionType);
+        LLVMSetFunctionCallConv(function, LLVMCCallConv);
+        // Helpers are only called from this module, leaving the inliner free to remove them
+        if (!external) LLVMSetLinkage(function, LLVMInternalLinkage);
+        functions.put(node.name + node.desc, function);
+        pending.add(node);
+        return function;
+    }
+
+    /**
+     * Gets the function of a method called directly, declaring it the first time.
+     */
+    private LLVMValueRef function(MethodNode node) {
+        final LLVMValueRef function = functions.get(node.name + node.desc);
+        if (function != null) return function;
+        return declare(node, prefix + node.name + "$" + functions.size(), false);
+    }
+
+    /**
+     * Gets if a call to {@code node} always reaches it, so that it can be compiled as a direct call.
+     */
+    private boolean isDirect(MethodNode node, int opcode) {
+        if (opcode == INVOKESTATIC || opcode == INVOKESPECIAL) return true;
+        if ((node.access & (ACC_PRIVATE | ACC_FINAL)) != 0 || Modifier.isFinal(type.getModifiers())) return true;
+        // Compiled methods also call each other, as they do for recursion
+        return methods.stream().anyMatch(method -> method.getName().equals(node.name) && Type.getMethodDescriptor(method).equals(node.desc));
+    }
+
     private final class SpeMethodVisitor extends MethodVisitor {
         final LLVMTypeRef type;
+        final LLVMTypeRef returnType;
         final LLVMValueRef function;
+        final String name, descriptor;
+        final LLVMBasicBlockRef entry, start;
+        // True if the record returned is stored through the first parameter
+        final boolean indirectReturn;
+        // The last parameter if the function reports exceptions, null otherwise
+        final LLVMValueRef status;
+        // Returns early once the status has been set, created on first use
+        LLVMBasicBlockRef thrown;
+        // Fast-math flags of floating-point operations, null to keep them strict
+        final String fastMath;
         ArrayDeque<LLVMValueRef> stack = new ArrayDeque<>();
+        // Basic block of every label starting one, found by scanning the method beforehand
         Map<Label, LLVMBasicBlockRef> labels = new HashMap<>();
+        // Types of the values left on the stack when jumping to a label
+        Map<Label, List<LLVMTypeRef>> labelStacks = new HashMap<>();
 
-        Map<Integer, LLVMValueRef> variables = new HashMap<>();
+        // Locals and stack values crossing blocks live in allocas, later promoted to registers by mem2reg
+        Map<Slot, LLVMValueRef> variables = new HashMap<>();
+        Map<Slot, LLVMValueRef> stackVariables = new HashMap<>();
+        Map<Integer, LLVMTypeRef> referenceTypes = new HashMap<>();
 
-        SpeMethodVisitor(String name, String descriptor, MethodVisitor methodVisitor) {
-            super(Opcodes.ASM9, methodVisitor);
-            var returnType = jvmTypeToLLVM(Type.getReturnType(descriptor));
-            var params = Arrays.stream(Type.getArgumentTypes(descriptor)).map(SpeCompiler::jvmTypeToLLVM).toArray(LLVMTypeRef[]::new);
-            this.type = LLVMFunctionType(returnType, new PointerPointer<>(params.length).put(params), params.length, 0);
-            this.function = LLVMAddFunction(module, name, type);
-            LLVMSetFunctionCallConv(function, LLVMCCallConv);
+        SpeMethodVisitor(MethodNode node, LLVMValueRef function, String fastMath) {
+            super(Opcodes.ASM9);
+            this.fastMath = fastMath;
+            this.name = node.name;
+            this.descriptor = node.desc;
+            this.function = function;
+            this.type = LLVMGlobalGetValueType(function);
+            this.returnType = LLVMGetReturnType(type);
+            this.indirectReturn = isRecord(Type.getReturnType(descriptor)) && LLVMGetTypeKind(returnType) == LLVMVoidTypeKind;
+            this.status = reporting.contains(name + descriptor) ? LLVMGetParam(function, LLVMCountParams(function) - 1) : null;
+            final Type[] argumentTypes = Type.getArgumentTypes(descriptor);
 
-            variables.put(0, function);
-            for (int i = 1; i <= params.length; i++) {
-                variables.put(i, LLVMGetParam(function, i - 1));
-                //variables.put(i, LLVMBuildAlloca(builder, params[i - 1], ""));
+            // The entry block only holds allocas, it jumps to the code once the whole method has been visited
+            this.entry = LLVMAppendBasicBlockInContext(context, function, "entry");
+            this.start = LLVMAppendBasicBlockInContext(context, function, "start");
+            for (AbstractInsnNode instruction : node.instructions) {
+                if (instruction instanceof JumpInsnNode jump) {
+                    addTarget(jump.label);
+                } else if (instruction instanceof TableSwitchInsnNode tableSwitch) {
+                    addTarget(tableSwitch.dflt);
+                    tableSwitch.labels.forEach(this::addTarget);
+                } else if (instruction instanceof LookupSwitchInsnNode lookupSwitch) {
+                    addTarget(lookupSwitch.dflt);
+                    lookupSwitch.labels.forEach(this::addTarget);
+                }
             }
+            LLVMPositionBuilderAtEnd(builder, start);
 
-            LLVMBasicBlockRef entry = LLVMAppendBasicBlock(function, "entry");
-            LLVMPositionBuilderAtEnd(builder, entry);
+            int index = 0, param = indirectReturn ? 1 : 0;
+            if ((node.access & ACC_STATIC) == 0) {
+                final LLVMTypeRef thisType = LLVMPointerType(LLVMInt8TypeInContext(context), 0);
+                referenceTypes.put(0, thisType);
+                LLVMBuildStore(builder, LLVMConstPointerNull(thisType), variable(0, thisType));
+                index = 1;
+            }
+            for (final Type argumentType : argumentTypes) {
+                final LLVMValueRef value;
+                if (isAggregate(argumentType)) {
+                    // Address and size passed separately, grouped back to be handled as a single reference
+                    final LLVMTypeRef aggregateType = jvmTypeToLLVM(argumentType);
+                    final LLVMValueRef address = LLVMBuildInsertValue(builder, LLVMGetUndef(aggregateType), LLVMGetParam(function, param++), 0, "address");
+                    value = LLVMBuildInsertValue(builder, address, LLVMGetParam(function, param++), 1, "size");
+                    referenceTypes.put(index, aggregateType);
+                } else if (isRecord(argumentType)) {
+                    // Components passed separately, grouped back into a single value
+                    LLVMValueRef record = LLVMGetUndef(jvmTypeToLLVM(argumentType));
+                    for (int i = 0; i < componentTypes(argumentType).length; i++) {
+                        record = LLVMBuildInsertValue(builder, record, LLVMGetParam(function, param++), i, "component");
+                    }
+                    value = record;
+                    referenceTypes.put(index, LLVMTypeOf(record));
+                } else {
+                    value = widen(LLVMGetParam(function, param++), argumentType);
+                }
+                LLVMBuildStore(builder, value, variable(index, LLVMTypeOf(value)));
+                index += argumentType.getSize();
+            }
         }
 
         @Override
         public void visitInsn(int opcode) {
-            System.out.println("single " + opcode);
             switch (opcode) {
-                case ICONST_M1 -> stack.push(LLVMConstInt(LLVMInt32Type(), -1, 0));
-                case ICONST_0 -> stack.push(LLVMConstInt(LLVMInt32Type(), 0, 0));
-                case ICONST_1 -> stack.push(LLVMConstInt(LLVMInt32Type(), 1, 0));
-                case ICONST_2 -> stack.push(LLVMConstInt(LLVMInt32Type(), 2, 0));
-                case ICONST_3 -> stack.push(LLVMConstInt(LLVMInt32Type(), 3, 0));
-                case ICONST_4 -> stack.push(LLVMConstInt(LLVMInt32Type(), 4, 0));
-                case ICONST_5 -> stack.push(LLVMConstInt(LLVMInt32Type(), 5, 0));
-                case LCONST_0 -> stack.push(LLVMConstInt(LLVMInt64Type(), 0, 0));
-                case LCONST_1 -> stack.push(LLVMConstInt(LLVMInt64Type(), 1, 0));
-                case FCONST_0 -> stack.push(LLVMConstReal(LLVMFloatType(), 0.0f));
-                case FCONST_1 -> stack.push(LLVMConstReal(LLVMFloatType(), 1.0f));
-                case FCONST_2 -> stack.push(LLVMConstReal(LLVMFloatType(), 2.0f));
-                case DCONST_0 -> stack.push(LLVMConstReal(LLVMDoubleType(), 0.0));
-                case DCONST_1 -> stack.push(LLVMConstReal(LLVMDoubleType(), 1.0));
-
-                case IADD -> stack.push(LLVMBuildAdd(builder, stack.pop(), stack.pop(), "IADD"));
-
-                case ISUB -> {
+                case ICONST_M1 -> stack.push(LLVMConstInt(LLVMInt32TypeInContext(context), -1, 0));
+                case ICONST_0 -> stack.push(LLVMConstInt(LLVMInt32TypeInContext(context), 0, 0));
+                case ICONST_1 -> stack.push(LLVMConstInt(LLVMInt32TypeInContext(context), 1, 0));
+                case ICONST_2 -> stack.push(LLVMConstInt(LLVMInt32TypeInContext(context), 2, 0));
+                case ICONST_3 -> stack.push(LLVMConstInt(LLVMInt32TypeInContext(context), 3, 0));
+                case ICONST_4 -> stack.push(LLVMConstInt(LLVMInt32TypeInContext(context), 4, 0));
+                case ICONST_5 -> stack.push(LLVMConstInt(LLVMInt32TypeInContext(context), 5, 0));
+                case LCONST_0 -> stack.push(LLVMConstInt(LLVMInt64TypeInContext(context), 0, 0));
+                case LCONST_1 -> stack.push(LLVMConstInt(LLVMInt64TypeInContext(context), 1, 0));
+                case FCONST_0 -> stack.push(LLVMConstReal(LLVMFloatTypeInContext(context), 0.0f));
+                case FCONST_1 -> stack.push(LLVMConstReal(LLVMFloatTypeInContext(context), 1.0f));
+                case FCONST_2 -> stack.push(LLVMConstReal(LLVMFloatTypeInContext(context), 2.0f));
+                case DCONST_0 -> stack.push(LLVMConstReal(LLVMDoubleTypeInContext(context), 0.0));
+                case DCONST_1 -> stack.push(LLVMConstReal(LLVMDoubleTypeInContext(context), 1.0));
+
+                case POP -> stack.pop();
+                case POP2 -> {
+                    if (!isWide(stack.pop())) stack.pop();
+                }
+                case DUP -> stack.push(stack.peek());
+                case DUP_X1 -> {
+                    LLVMValueRef value1 = stack.pop();
+                    LLVMValueRef value2 = stack.pop();
+                    push(value1, value2, value1);
+                }
+                case DUP_X2 -> {
+                    LLVMValueRef value1 = stack.pop();
+                    LLVMValueRef value2 = stack.pop();
+                    if (isWide(value2)) {
+                        push(value1, value2, value1);
+                    } else {
+                        LLVMValueRef value3 = stack.pop();
+                        push(value1, value3, value2, value1);
+                    }
+                }
+                case DUP2 -> {
+                    LLVMValueRef value1 = stack.pop();
+                    if (isWide(value1)) {
+                        push(value1, value1);
+                    } else {
+                        LLVMValueRef value2 = stack.pop();
+                        push(value2, value1, value2, value1);
+                    }
+                }
+                case DUP2_X1 -> {
+                    LLVMValueRef value1 = stack.pop();
+                    LLVMValueRef value2 = stack.pop();
+                    if (isWide(value1)) {
+                        push(value1, value2, value1);
+                    } else {
+                        LLVMValueRef value3 = stack.pop();
+                        push(value2, value1, value3, value2, value1);
+                    }
+                }
+                case DUP2_X2 -> {
+                    LLVMValueRef value1 = stack.pop();
+                    LLVMValueRef value2 = stack.pop();
+                    if (isWide(value1)) {
+                        if (isWide(value2)) {
+                            push(value1, value2, value1);
+                        } else {
+                            LLVMValueRef value3 = stack.pop();
+                            push(value1, value3, value2, value1);
+                        }
+                    } else {
+                        LLVMValueRef value3 = stack.pop();
+                        if (isWide(value3)) {
+                            push(value2, value1, value3, value2, value1);
+                        } else {
+                            LLVMValueRef value4 = stack.pop();
+                            push(value2, value1, value4, value3, value2, value1);
+                        }
+                    }
+                }
+                case SWAP -> {
+                    LLVMValueRef value1 = stack.pop();
+                    LLVMValueRef value2 = stack.pop();
+                    push(value1, value2);
+                }
+
+                case IADD, LADD -> binary(LLVM::LLVMBuildAdd, "ADD");
+                case FADD, DADD -> floatBinary("fadd", LLVM::LLVMBuildFAdd);
+                case ISUB, LSUB -> binary(LLVM::LLVMBuildSub, "SUB");
+                case FSUB, DSUB -> floatBinary("fsub", LLVM::LLVMBuildFSub);
+                case IMUL, LMUL -> binary(LLVM::LLVMBuildMul, "MUL");
+                case FMUL, DMUL -> floatBinary("fmul", LLVM::LLVMBuildFMul);
+                case IDIV, LDIV -> divide(false);
+                case FDIV, DDIV -> floatBinary("fdiv", LLVM::LLVMBuildFDiv);
+                case IREM, LREM -> divide(true);
+                // frem has the semantics of fmod, like the Java remainder
+                case FREM, DREM -> floatBinary("frem", LLVM::LLVMBuildFRem);
+                case INEG, LNEG -> {
+                    LLVMValueRef value = stack.pop();
+                    stack.push(LLVMBuildSub(builder, LLVMConstNull(LLVMTypeOf(value)), value, "NEG"));
+                }
+                case FNEG, DNEG -> stack.push(floatNegate(stack.pop()));
+
+                case ISHL, LSHL -> shift(LLVM::LLVMBuildShl, "SHL");
+                case ISHR, LSHR -> shift(LLVM::LLVMBuildAShr, "SHR");
+                case IUSHR, LUSHR -> shift(LLVM::LLVMBuildLShr, "USHR");
+                case IAND, LAND -> binary(LLVM::LLVMBuildAnd, "AND");
+                case IOR, LOR -> binary(LLVM::LLVMBuildOr, "OR");
+                case IXOR, LXOR -> binary(LLVM::LLVMBuildXor, "XOR");
+
+                case I2L -> stack.push(LLVMBuildSExt(builder, stack.pop(), LLVMInt64TypeInContext(context), "I2L"));
+                case I2F, L2F -> stack.push(LLVMBuildSIToFP(builder, stack.pop(), LLVMFloatTypeInContext(context), "2F"));
+                case I2D, L2D -> stack.push(LLVMBuildSIToFP(builder, stack.pop(), LLVMDoubleTypeInContext(context), "2D"));
+                case L2I -> stack.push(LLVMBuildTrunc(builder, stack.pop(), LLVMInt32TypeInContext(context), "L2I"));
+                case F2I, D2I -> stack.push(floatToInt(stack.pop(), LLVMInt32TypeInContext(context)));
+                case F2L, D2L -> stack.push(floatToInt(stack.pop(), LLVMInt64TypeInContext(context)));
+                case F2D -> stack.push(LLVMBuildFPExt(builder, stack.pop(), LLVMDoubleTypeInContext(context), "F2D"));
+                case D2F -> stack.push(LLVMBuildFPTrunc(builder, stack.pop(), LLVMFloatTypeInContext(context), "D2F"));
+                case I2B -> stack.push(widen(narrow(stack.pop(), Type.BYTE_TYPE), Type.BYTE_TYPE));
+                case I2C -> stack.push(widen(narrow(stack.pop(), Type.CHAR_TYPE), Type.CHAR_TYPE));
+                case I2S -> stack.push(widen(narrow(stack.pop(), Type.SHORT_TYPE), Type.SHORT_TYPE));
+
+                case LCMP -> {
                     LLVMValueRef right = stack.pop();
                     LLVMValueRef left = stack.pop();
-                    stack.push(LLVMBuildSub(builder, left, right, "ISUB"));
+                    LLVMValueRef lower = LLVMBuildICmp(builder, LLVMIntSLT, left, right, "LCMP lower");
+                    LLVMValueRef greater = LLVMBuildICmp(builder, LLVMIntSGT, left, right, "LCMP greater");
+                    stack.push(compareResult(lower, greater, false));
                 }
-
-                case IMUL -> {
+                case FCMPL, FCMPG, DCMPL, DCMPG -> {
                     LLVMValueRef right = stack.pop();
                     LLVMValueRef left = stack.pop();
-                    stack.push(LLVMBuildMul(builder, left, right, "IMUL"));
+                    // Ordered comparisons are false for NaN, which then falls to the default of the opcode
+                    final boolean nanGreater = opcode == FCMPG || opcode == DCMPG;
+                    LLVMValueRef lower = floatCompare(nanGreater ? LLVMRealOLT : LLVMRealULT, left, right, "FCMP lower");
+                    LLVMValueRef greater = floatCompare(nanGreater ? LLVMRealUGT : LLVMRealOGT, left, right, "FCMP greater");
+                    stack.push(compareResult(lower, greater, nanGreater));
+                }
+
+                case IALOAD, LALOAD, FALOAD, DALOAD, BALOAD, CALOAD, SALOAD -> {
+                    LLVMValueRef index = stack.pop();
+                    LLVMValueRef array = stack.pop();
+                    final Type elementType = arrayElementType(opcode - IALOAD);
+                    LLVMValueRef pointer = elementPointer(array, elementType, index, true);
+                    stack.push(widen(LLVMBuildLoad2(builder, jvmTypeToLLVM(elementType), pointer, "xALOAD"), elementType));
+                }
+                case IASTORE, LASTORE, FASTORE, DASTORE, BASTORE, CASTORE, SASTORE -> {
+                    LLVMValueRef value = stack.pop();
+                    LLVMValueRef index = stack.pop();
+                    LLVMValueRef array = stack.pop();
+                    final Type elementType = arrayElementType(opcode - IASTORE);
+                    LLVMValueRef pointer = elementPointer(array, elementType, index, true);
+                    LLVMBuildStore(builder, narrow(value, elementType), pointer);
                 }
+                case ARRAYLENGTH -> stack.push(LLVMBuildExtractValue(builder, stack.pop(), 1, "ARRAYLENGTH"));
 
-                case IRETURN, LRETURN, FRETURN, DRETURN, ARETURN -> LLVMBuildRet(builder, stack.pop());
-                case RETURN -> LLVMBuildRetVoid(builder);
+                case IRETURN, LRETURN, FRETURN, DRETURN, ARETURN -> {
+                    final Type returnType = Type.getReturnType(descriptor);
+                    if (indirectReturn) {
+                        storeRecord(stack.pop(), LLVMGetParam(function, 0), returnType);
+                        LLVMBuildRetVoid(builder);
+                    } else {
+                        LLVMBuildRet(builder, narrow(stack.pop(), returnType));
+                    }
+                    unreachable();
+                }
+                case RETURN -> {
+                    LLVMBuildRetVoid(builder);
+                    unreachable();
+                }
                 default -> throw new IllegalArgumentException("Unsupported opcode: " + opcode);
             }
         }
 
         @Override
         public void visitIntInsn(int opcode, int operand) {
-            System.out.println("int " + opcode + " " + operand);
-            throw new UnsupportedOperationException();
+            switch (opcode) {
+                case BIPUSH, SIPUSH -> stack.push(LLVMConstInt(LLVMInt32TypeInContext(context), operand, 1));
+                default -> throw new IllegalArgumentException("Unsupported opcode: " + opcode);
+            }
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            if (value instanceof Integer integer) {
+                stack.push(LLVMConstInt(LLVMInt32TypeInContext(context), integer, 1));
+            } else if (value instanceof Long longValue) {
+                stack.push(LLVMConstInt(LLVMInt64TypeInContext(context), longValue, 1));
+            } else if (value instanceof Float floatValue) {
+                stack.push(LLVMConstReal(LLVMFloatTypeInContext(context), floatValue));
+            } else if (value instanceof Double doubleValue) {
+                stack.push(LLVMConstReal(LLVMDoubleTypeInContext(context), doubleValue));
+            } else {
+                throw new IllegalArgumentException("Unsupported constant: " + value);
+            }
         }
 
         @Override
         public void visitIincInsn(int varIndex, int increment) {
-            System.out.println("incr int " + varIndex + " " + increment);
-            LLVMValueRef value = variables.get(varIndex);
-            variables.put(varIndex, LLVMBuildAdd(builder, value, LLVMConstInt(LLVMInt32Type(), increment, 0), "int increment"));
+            LLVMValueRef variable = variable(varIndex, LLVMInt32TypeInContext(context));
+            LLVMValueRef value = LLVMBuildLoad2(builder, LLVMInt32TypeInContext(context), variable, "int");
+            LLVMBuildStore(builder, LLVMBuildAdd(builder, value, LLVMConstInt(LLVMInt32TypeInContext(context), increment, 1), "int increment"), variable);
         }
 
         @Override
         public void visitJumpInsn(int opcode, Label label) {
-            System.out.println("jump " + opcode + " " + label);
-            LLVMBasicBlockRef ifFalse = LLVMAppendBasicBlock(function, "if_false");
-            LLVMBasicBlockRef exit = LLVMAppendBasicBlock(function, "exit");
+            final LLVMBasicBlockRef target = labels.get(label);
+            if (opcode == GOTO) {
+                jump(label);
+                LLVMBuildBr(builder, target);
+                unreachable();
+                return;
+            }
             LLVMValueRef condition = switch (opcode) {
-                case IFEQ ->
-                        LLVMBuildICmp(builder, LLVMIntEQ, stack.poll(), LLVMConstInt(LLVMInt32Type(), 0, 0), "condition = value == 0");
-                case IFNE ->
-                        LLVMBuildICmp(builder, LLVMIntNE, stack.poll(), LLVMConstInt(LLVMInt32Type(), 0, 0), "condition = value != 0");
+                case IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE -> LLVMBuildICmp(builder, intPredicate(opcode - IFEQ),
+                        stack.pop(), LLVMConstInt(LLVMInt32TypeInContext(context), 0, 0), "condition = value ? 0");
+                case IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE -> {
+                    LLVMValueRef right = stack.pop();
+                    LLVMValueRef left = stack.pop();
+                    yield LLVMBuildICmp(builder, intPredicate(opcode - IF_ICMPEQ), left, right, "condition = left ? right");
+                }
                 default -> throw new IllegalArgumentException("Unsupported jump opcode: " + opcode);
             };
-            LLVMBuildCondBr(builder, condition, exit, ifFalse);
-            LLVMPositionBuilderAtEnd(builder, ifFalse);
+            jump(label);
+            LLVMBasicBlockRef next = LLVMAppendBasicBlockInContext(context, function, "next");
+            LLVMBuildCondBr(builder, condition, target, next);
+            LLVMPositionBuilderAtEnd(builder, next);
+        }
 
-            this.labels.put(label, exit);
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            branch(stack.pop(), dflt, IntStream.rangeClosed(min, max).toArray(), labels);
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            branch(stack.pop(), dflt, keys, labels);
+        }
+
+        /**
+         * Branches to the label of the key equal to {@code value}, LLVM choosing between a jump table and comparisons.
+         */
+        private void branch(LLVMValueRef value, Label defaultLabel, int[] keys, Label[] targets) {
+            jump(defaultLabel);
+            for (Label target : targets) labelStacks.putIfAbsent(target, labelStacks.get(defaultLabel));
+            final LLVMValueRef instruction = LLVMBuildSwitch(builder, value, labels.get(defaultLabel), keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                LLVMAddCase(instruction, LLVMConstInt(LLVMInt32TypeInContext(context), keys[i], 1), labels.get(targets[i]));
+            }
+            unreachable();
         }
 
         @Override
         public void visitLabel(Label label) {
-            System.out.println("label " + label);
-            LLVMBasicBlockRef block = this.labels.remove(label);
-            if (block == null) throw new IllegalArgumentException("Unknown label: " + label);
+            LLVMBasicBlockRef block = this.labels.get(label);
+            if (block == null) return; // Not a jump target, the current block continues
+            if (LLVMGetBasicBlockTerminator(LLVMGetInsertBlock(builder)) == null) {
+                // Fall through
+                jump(label);
+                LLVMBuildBr(builder, block);
+            }
             LLVMPositionBuilderAtEnd(builder, block);
+            stack.clear();
+            final List<LLVMTypeRef> types = labelStacks.getOrDefault(label, List.of());
+            for (int i = 0; i < types.size(); i++) {
+                final LLVMTypeRef type = types.get(i);
+                stack.push(LLVMBuildLoad2(builder, type, stackVariable(i, type), "stack"));
+            }
         }
 
         @Override
         public void visitVarInsn(int opcode, int varIndex) {
-            System.out.println("variable " + opcode + " " + varIndex);
             switch (opcode) {
-                case ILOAD, LLOAD, FLOAD, DLOAD, ALOAD -> stack.push(variables.get(varIndex));
+                case ILOAD -> stack.push(LLVMBuildLoad2(builder, LLVMInt32TypeInContext(context), variable(varIndex, LLVMInt32TypeInContext(context)), "ILOAD"));
+                case LLOAD -> stack.push(LLVMBuildLoad2(builder, LLVMInt64TypeInContext(context), variable(varIndex, LLVMInt64TypeInContext(context)), "LLOAD"));
+                case FLOAD -> stack.push(LLVMBuildLoad2(builder, LLVMFloatTypeInContext(context), variable(varIndex, LLVMFloatTypeInContext(context)), "FLOAD"));
+                case DLOAD -> stack.push(LLVMBuildLoad2(builder, LLVMDoubleTypeInContext(context), variable(varIndex, LLVMDoubleTypeInContext(context)), "DLOAD"));
+                case ALOAD -> {
+                    final LLVMTypeRef type = referenceTypes.get(varIndex);
+                    if (type == null) throw new IllegalArgumentException("Unknown reference variable: " + varIndex);
+                    stack.push(LLVMBuildLoad2(builder, type, variable(varIndex, type), "ALOAD"));
+                }
+                case ISTORE, LSTORE, FSTORE, DSTORE, ASTORE -> {
+                    final LLVMValueRef value = stack.pop();
+                    final LLVMTypeRef type = LLVMTypeOf(value);
+                    if (opcode == ASTORE) referenceTypes.put(varIndex, type);
+                    LLVMBuildStore(builder, value, variable(varIndex, type));
+                }
                 default -> throw new IllegalArgumentException("Unsupported opcode: " + opcode);
             }
         }
 
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            if (opcode == NEW && record(type) != null) {
+                // Placeholder of the record until its constructor is called
+                stack.push(LLVMGetUndef(jvmTypeToLLVM(Type.getObjectType(type))));
+                return;
+            }
+            throw new IllegalArgumentException("Unsupported type instruction: " + opcode + " " + type);
+        }
+
         @Override
         public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
-            System.out.println("field " + opcode + " " + owner + " " + name + " " + descriptor);
-            throw new UnsupportedOperationException();
+            if (opcode == GETSTATIC && owner.equals(VALUE_LAYOUT)) {
+                // Only the type of the layout matters, given by the accessor using it
+                stack.push(LLVMGetUndef(memoryType(layoutType(name))));
+                return;
+            }
+            if (opcode == GETSTATIC && descriptor.equals("L" + VECTOR_SPECIES + ";")) {
+                // Likewise, a species is only the type of its vectors
+                stack.push(LLVMGetUndef(speciesType(owner, name)));
+                return;
+            }
+            if (opcode == GETSTATIC && owner.equals(VECTOR_OPERATORS)) {
+                stack.push(vectorOperator(name));
+                return;
+            }
+            if (opcode == GETSTATIC && owner.equals(BYTE_ORDER)) {
+                if (!name.equals(ByteOrder.nativeOrder().toString()))
+                    throw new IllegalArgumentException("Only the native byte order is supported");
+                stack.push(LLVMConstPointerNull(LLVMPointerType(LLVMInt8TypeInContext(context), 0)));
+                return;
+            }
+            if (owner.equals(Type.getInternalName(SpeCompiler.this.type))) {
+                final Type fieldType = Type.getType(descriptor);
+                switch (opcode) {
+                    case GETFIELD -> {
+                        stack.pop(); // this
+                        stack.push(field(name, fieldType));
+                    }
+                    case GETSTATIC -> {
+                        final StaticField field = staticField(name, fieldType);
+                        if (field.global() == null) {
+                            stack.push(field.value());
+                        } else {
+                            final LLVMValueRef load = LLVMBuildLoad2(builder, memoryType(fieldType), field.global(), name);
+                            if (field.isVolatile()) atomic(load, fieldType);
+                            stack.push(fromMemory(load, fieldType));
+                        }
+                    }
+                    case PUTSTATIC -> {
+                        final StaticField field = staticField(name, fieldType);
+                        if (field.global() == null || fieldType.getSort() == Type.ARRAY)
+                            throw new IllegalArgumentException("Static field " + name + " cannot be assigned");
+                        final LLVMValueRef store = LLVMBuildStore(builder, toMemory(stack.pop(), fieldType), field.global());
+                        if (field.isVolatile()) atomic(store, fieldType);
+                    }
+                    default -> throw new IllegalArgumentException("Unsupported field access: " + owner + "." + name);
+                }
+                return;
+            }
+            throw new IllegalArgumentException("Unsupported field access: " + owner + "." + name);
         }
 
         @Override
         public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
-            System.out.println("method " + opcode + " " + owner + " " + name + " " + descriptor + " " + isInterface);
-            switch (opcode) {
-                case INVOKEVIRTUAL -> {
-                    LLVMValueRef param = stack.pop();
-                    LLVMValueRef objectRef = stack.pop();
-                    PointerPointer<Pointer> arguments = new PointerPointer<>(1).put(param);
-                    stack.push(LLVMBuildCall2(builder, type, function, arguments, 1, "factorialResult = factorial(nMinusOne)"));
+            if (owner.equals(SEGMENT)) {
+                visitSegmentInsn(name, descriptor);
+                return;
+            }
+            if (owner.startsWith(VECTOR_PACKAGE)) {
+                visitVectorInsn(opcode, owner, name, descriptor);
+                return;
+            }
+            if (owner.equals(BYTE_ORDER) && name.equals("nativeOrder")) {
+                stack.push(LLVMConstPointerNull(LLVMPointerType(LLVMInt8TypeInContext(context), 0)));
+                return;
+            }
+            if (visitIntrinsic(owner, name, descriptor)) return;
+            if (!owner.equals(Type.getInternalName(SpeCompiler.this.type)) && record(owner) != null) {
+                visitRecordInsn(opcode, owner, name, descriptor);
+                return;
+            }
+            final LLVMValueRef callback = owner.equals(Type.getInternalName(SpeCompiler.this.type)) ? callbacks.get(name + descriptor) : null;
+            if (callback != null) {
+                visitCallback(callback, name, descriptor);
+                return;
+            }
+            final MethodNode target = owner.equals(Type.getInternalName(SpeCompiler.this.type)) ? classMethods.get(name + descriptor) : null;
+            if (target == null || !isDirect(target, opcode))
+                throw new IllegalArgumentException("Unsupported method call: " + owner + "." + name + descriptor);
+            final LLVMValueRef callee = function(target);
+            final List<LLVMValueRef> params = popArguments(Type.getArgumentTypes(descriptor));
+            if (opcode != INVOKESTATIC) stack.pop(); // this
+            final Type returnType = Type.getReturnType(descriptor);
+            final LLVMTypeRef calleeType = LLVMGlobalGetValueType(callee);
+            final boolean indirect = isRecord(returnType) && LLVMGetTypeKind(LLVMGetReturnType(calleeType)) == LLVMVoidTypeKind;
+            final LLVMValueRef output = indirect ? alloca(recordMemoryType(returnType), "record") : null;
+            if (indirect) params.add(0, LLVMBuildBitCast(builder, output, LLVMPointerType(LLVMInt8TypeInContext(context), 0), "output"));
+            // Callers of reporting methods report too, passing their own status along
+            final boolean reports = reporting.contains(name + descriptor);
+            if (reports) params.add(status);
+            PointerPointer<Pointer> arguments = new PointerPointer<>(params.size()).put(params.toArray(LLVMValueRef[]::new));
+            LLVMValueRef result = LLVMBuildCall2(builder, calleeType, callee, arguments, params.size(), "");
+            if (reports) returnIfThrown(status);
+            if (indirect) stack.push(loadRecord(output, returnType));
+            else if (returnType.getSort() != Type.VOID) stack.push(widen(result, returnType));
+        }
+
+        /**
+         * Calls a {@link JavaCallback} through the upcall stub stored in {@code global}, as a cold path.
+         */
+        private void visitCallback(LLVMValueRef global, String name, String descriptor) {
+            final LLVMTypeRef functionType = callbackType(descriptor);
+            final LLVMValueRef stub = LLVMBuildLoad2(builder, LLVMGlobalGetValueType(global), global, name);
+            final List<LLVMValueRef> params = popArguments(Type.getArgumentTypes(descriptor));
+            PointerPointer<Pointer> arguments = new PointerPointer<>(params.size()).put(params.toArray(LLVMValueRef[]::new));
+            final LLVMValueRef result = LLVMBuildCall2(builder, functionType, stub, arguments, params.size(), "");
+            final int cold = LLVMGetEnumAttributeKindForName("cold", 4);
+            LLVMAddCallSiteAttribute(result, LLVMAttributeFunctionIndex, LLVMCreateEnumAttribute(context, cold, 0));
+            final Type returnType = Type.getReturnType(descriptor);
+            if (returnType.getSort() != Type.VOID) stack.push(widen(result, returnType));
+        }
+
+        /**
+         * Lowers the construction of records and the access to their components, records being plain LLVM structs.
+         * <p>
+         * The canonical constructor is expected to assign the components as is, it is not compiled.
+         */
+        private void visitRecordInsn(int opcode, String owner, String name, String descriptor) {
+            final Type recordType = Type.getObjectType(owner);
+            final Type[] componentTypes = componentTypes(recordType);
+            if (opcode == INVOKESPECIAL && name.equals("<init>")) {
+                if (!descriptor.equals(Type.getMethodDescriptor(Type.VOID_TYPE, componentTypes)))
+                    throw new IllegalArgumentException("Only the canonical constructor of " + recordType.getClassName() + " is supported");
+                final LLVMValueRef[] values = new LLVMValueRef[componentTypes.length];
+                for (int i = values.length - 1; i >= 0; i--) values[i] = stack.pop();
+                LLVMValueRef record = LLVMGetUndef(jvmTypeToLLVM(recordType));
+                for (int i = 0; i < values.length; i++) {
+                    record = LLVMBuildInsertValue(builder, record, narrow(values[i], componentTypes[i]), i, "component");
                 }
-                default -> throw new IllegalArgumentException("Unsupported opcode: " + opcode);
+                stack.pop();
+                // NEW is followed by DUP, the copy left on the stack becomes the record
+                stack.pop();
+                stack.push(record);
+                return;
+            }
+            final RecordComponent[] components = record(owner).getRecordComponents();
+            for (int i = 0; i < components.length; i++) {
+                if (opcode == INVOKEVIRTUAL && components[i].getName().equals(name) && descriptor.equals("()" + componentTypes[i].getDescriptor())) {
+                    stack.push(widen(LLVMBuildExtractValue(builder, stack.pop(), i, name), componentTypes[i]));
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported record method: " + recordType.getClassName() + "." + name + descriptor);
+        }
+
+        private void storeRecord(LLVMValueRef record, LLVMValueRef pointer, Type recordType) {
+            final LLVMTypeRef memoryType = recordMemoryType(recordType);
+            final Type[] componentTypes = componentTypes(recordType);
+            pointer = LLVMBuildBitCast(builder, pointer, LLVMPointerType(memoryType, 0), "record");
+            for (int i = 0; i < componentTypes.length; i++) {
+                final LLVMValueRef component = widen(LLVMBuildExtractValue(builder, record, i, "component"), componentTypes[i]);
+                final LLVMValueRef componentPointer = LLVMBuildStructGEP2(builder, memoryType, pointer, i, "component");
+                LLVMBuildStore(builder, toMemory(component, componentTypes[i]), componentPointer);
+            }
+        }
+
+        private LLVMValueRef loadRecord(LLVMValueRef pointer, Type recordType) {
+            final LLVMTypeRef memoryType = recordMemoryType(recordType);
+            final Type[] componentTypes = componentTypes(recordType);
+            LLVMValueRef record = LLVMGetUndef(jvmTypeToLLVM(recordType));
+            for (int i = 0; i < componentTypes.length; i++) {
+                final LLVMValueRef componentPointer = LLVMBuildStructGEP2(builder, memoryType, pointer, i, "component");
+                final LLVMValueRef component = LLVMBuildLoad2(builder, LLVMStructGetTypeAtIndex(memoryType, i), componentPointer, "component");
+                record = LLVMBuildInsertValue(builder, record, narrow(fromMemory(component, componentTypes[i]), componentTypes[i]), i, "component");
+            }
+            return record;
+        }
+
+        private void push(LLVMValueRef... values) {
+            for (LLVMValueRef value : values) stack.push(value);
+        }
+
+        private void binary(BinaryBuilder operation, String name) {
+            LLVMValueRef right = stack.pop();
+            LLVMValueRef left = stack.pop();
+            stack.push(operation.build(builder, left, right, name));
+        }
+
+        /**
+         * Emits a floating-point operation, through an always inlined function carrying the fast-math flags if any.
+         */
+        private void floatBinary(String instruction, BinaryBuilder operation) {
+            if (fastMath == null) {
+                binary(operation, instruction);
+                return;
+            }
+            LLVMValueRef right = stack.pop();
+            LLVMValueRef left = stack.pop();
+            final LLVMTypeRef type = LLVMTypeOf(left);
+            stack.push(fastMath("%s %s %s %%a0, %%a1".formatted(instruction, fastMath, typeName(type)), type, null, left, right));
+        }
+
+        private LLVMValueRef floatNegate(LLVMValueRef value) {
+            if (fastMath == null) return LLVMBuildFNeg(builder, value, "FNEG");
+            final LLVMTypeRef type = LLVMTypeOf(value);
+            return fastMath("fneg %s %s %%a0".formatted(fastMath, typeName(type)), type, null, value);
+        }
+
+        private LLVMValueRef floatCompare(int predicate, LLVMValueRef left, LLVMValueRef right, String name) {
+            if (fastMath == null) return LLVMBuildFCmp(builder, predicate, left, right, name);
+            final LLVMTypeRef type = LLVMTypeOf(left);
+            LLVMTypeRef resultType = LLVMInt1TypeInContext(context);
+            if (LLVMGetTypeKind(type) == LLVMVectorTypeKind) resultType = LLVMVectorType(resultType, LLVMGetVectorSize(type));
+            return fastMath("fcmp %s %s %s %%a0, %%a1".formatted(fastMath, REAL_PREDICATES.get(predicate), typeName(type)),
+                    resultType, null, left, right);
+        }
+
+        /**
+         * Calls the function computing {@code instruction} with the fast-math flags of the method.
+         */
+        private LLVMValueRef fastMath(String instruction, LLVMTypeRef returnType, @Nullable String declaration, LLVMValueRef... arguments) {
+            final LLVMTypeRef[] params = Arrays.stream(arguments).map(LLVM::LLVMTypeOf).toArray(LLVMTypeRef[]::new);
+            final LLVMValueRef function = fastMathFunction(instruction, returnType, params, declaration);
+            final LLVMTypeRef functionType = LLVMFunctionType(returnType, new PointerPointer<>(params.length).put(params), params.length, 0);
+            return LLVMBuildCall2(builder, functionType, function, new PointerPointer<>(arguments.length).put(arguments), arguments.length, "");
+        }
+
+        /**
+         * Shifts by the low bits of the count, as many as needed to address the bits of the value.
+         */
+        private void shift(BinaryBuilder operation, String name) {
+            LLVMValueRef count = stack.pop();
+            LLVMValueRef value = stack.pop();
+            final LLVMTypeRef type = LLVMTypeOf(value);
+            count = LLVMBuildZExt(builder, count, type, "count");
+            count = LLVMBuildAnd(builder, count, LLVMConstInt(type, LLVMGetIntTypeWidth(type) - 1, 0), "count");
+            stack.push(operation.build(builder, value, count, name));
+        }
+
+        /**
+         * Divides integers with the JVM semantics, where MIN_VALUE / -1 overflows to MIN_VALUE instead of being undefined.
+         * <p>
+         * Native code cannot throw {@link ArithmeticException}, a division by zero sets the status and returns instead.
+         */
+        private void divide(boolean remainder) {
+            LLVMValueRef divisor = stack.pop();
+            LLVMValueRef dividend = stack.pop();
+            final LLVMTypeRef type = LLVMTypeOf(divisor);
+
+            LLVMValueRef zero = LLVMBuildICmp(builder, LLVMIntEQ, divisor, LLVMConstNull(type), "zero");
+            LLVMBasicBlockRef divisionByZero = LLVMAppendBasicBlockInContext(context, function, "division by zero");
+            LLVMBasicBlockRef next = LLVMAppendBasicBlockInContext(context, function, "divide");
+            LLVMBuildCondBr(builder, zero, divisionByZero, next);
+            LLVMPositionBuilderAtEnd(builder, divisionByZero);
+            LLVMBuildStore(builder, LLVMConstInt(LLVMInt32TypeInContext(context), SpeStatus.DIVISION_BY_ZERO, 0), status);
+            LLVMBuildBr(builder, thrown());
+            LLVMPositionBuilderAtEnd(builder, next);
+
+            LLVMValueRef minusOne = LLVMBuildICmp(builder, LLVMIntEQ, divisor, LLVMConstAllOnes(type), "minus one");
+            LLVMValueRef safeDivisor = LLVMBuildSelect(builder, minusOne, LLVMConstInt(type, 1, 0), divisor, "divisor");
+            if (remainder) {
+                LLVMValueRef result = LLVMBuildSRem(builder, dividend, safeDivisor, "REM");
+                stack.push(LLVMBuildSelect(builder, minusOne, LLVMConstNull(type), result, "REM"));
+            } else {
+                LLVMValueRef result = LLVMBuildSDiv(builder, dividend, safeDivisor, "DIV");
+                LLVMValueRef negated = LLVMBuildSub(builder, LLVMConstNull(type), dividend, "DIV negated");
+                stack.push(LLVMBuildSelect(builder, minusOne, negated, result, "DIV"));
+            }
+        }
+
+        /**
+         * Converts with saturation and NaN mapped to 0, like the JVM does.
+         */
+        private LLVMValueRef floatToInt(LLVMValueRef value, LLVMTypeRef type) {
+            final String name = "llvm.fptosi.sat." + typeSuffix(type) + "." + typeSuffix(LLVMTypeOf(value));
+            final LLVMTypeRef functionType = LLVMFunctionType(type, new PointerPointer<>(1).put(LLVMTypeOf(value)), 1, 0);
+            final LLVMValueRef function = intrinsic(name, functionType);
+            return LLVMBuildCall2(builder, functionType, function, new PointerPointer<>(1).put(value), 1, "F2I");
+        }
+
+        /**
+         * Builds the -1, 0 or 1 result of a comparison.
+         *
+         * @param greaterFirst true to test {@code greater} first, deciding the result when both conditions hold
+         */
+        private LLVMValueRef compareResult(LLVMValueRef lower, LLVMValueRef greater, boolean greaterFirst) {
+            final LLVMTypeRef intType = LLVMInt32TypeInContext(context);
+            final LLVMValueRef minusOne = LLVMConstInt(intType, -1, 1), zero = LLVMConstInt(intType, 0, 0), one = LLVMConstInt(intType, 1, 0);
+            if (greaterFirst) {
+                LLVMValueRef notGreater = LLVMBuildSelect(builder, lower, minusOne, zero, "compare");
+                return LLVMBuildSelect(builder, greater, one, notGreater, "compare");
+            }
+            LLVMValueRef notLower = LLVMBuildSelect(builder, greater, one, zero, "compare");
+            return LLVMBuildSelect(builder, lower, minusOne, notLower, "compare");
+        }
+
+        /**
+         * Maps well-known methods of {@link Math}, {@link Integer} and {@link Long} to LLVM intrinsics.
+         *
+         * @return false if the method is not an intrinsic
+         */
+        private boolean visitIntrinsic(String owner, String name, String descriptor) {
+            if (owner.equals("java/lang/Math") && (name.equals("min") || name.equals("max")) &&
+                    (descriptor.equals("(FF)F") || descriptor.equals("(DD)D"))) {
+                floatMinMax(name.equals("max"));
+                return true;
+            }
+            final String intrinsic = switch (owner + "." + name + descriptor) {
+                case "java/lang/Math.abs(I)I", "java/lang/Math.abs(J)J" -> "llvm.abs";
+                case "java/lang/Math.abs(F)F", "java/lang/Math.abs(D)D" -> "llvm.fabs";
+                case "java/lang/Math.min(II)I", "java/lang/Math.min(JJ)J" -> "llvm.smin";
+                case "java/lang/Math.max(II)I", "java/lang/Math.max(JJ)J" -> "llvm.smax";
+                case "java/lang/Math.sqrt(D)D", "java/lang/StrictMath.sqrt(D)D" -> "llvm.sqrt";
+                case "java/lang/Math.fma(FFF)F", "java/lang/Math.fma(DDD)D" -> "llvm.fma";
+                case "java/lang/Math.floor(D)D", "java/lang/StrictMath.floor(D)D" -> "llvm.floor";
+                case "java/lang/Math.ceil(D)D", "java/lang/StrictMath.ceil(D)D" -> "llvm.ceil";
+                case "java/lang/Math.rint(D)D", "java/lang/StrictMath.rint(D)D" -> "llvm.rint";
+                case "java/lang/Integer.bitCount(I)I", "java/lang/Long.bitCount(J)I" -> "llvm.ctpop";
+                case "java/lang/Integer.numberOfLeadingZeros(I)I", "java/lang/Long.numberOfLeadingZeros(J)I" -> "llvm.ctlz";
+                case "java/lang/Integer.numberOfTrailingZeros(I)I", "java/lang/Long.numberOfTrailingZeros(J)I" -> "llvm.cttz";
+                case "java/lang/Integer.rotateLeft(II)I", "java/lang/Long.rotateLeft(JI)J" -> "llvm.fshl";
+                case "java/lang/Integer.rotateRight(II)I", "java/lang/Long.rotateRight(JI)J" -> "llvm.fshr";
+                case "java/lang/Integer.reverse(I)I", "java/lang/Long.reverse(J)J" -> "llvm.bitreverse";
+                case "java/lang/Integer.reverseBytes(I)I", "java/lang/Long.reverseBytes(J)J" -> "llvm.bswap";
+                default -> null;
+            };
+            if (intrinsic == null) return false;
+            final LinkedList<LLVMValueRef> arguments = new LinkedList<>();
+            for (int i = Type.getArgumentTypes(descriptor).length; i > 0; i--) arguments.addFirst(stack.pop());
+            final LLVMTypeRef type = LLVMTypeOf(arguments.getFirst());
+            switch (intrinsic) {
+                // Defined for MIN_VALUE and 0 like in Java, instead of returning poison
+                case "llvm.abs", "llvm.ctlz", "llvm.cttz" -> arguments.add(LLVMConstInt(LLVMInt1TypeInContext(context), 0, 0));
+                case "llvm.fshl", "llvm.fshr" -> {
+                    // Funnel shifts of a value with itself rotate it, modulo its width
+                    final LLVMValueRef distance = LLVMBuildZExt(builder, arguments.removeLast(), type, "distance");
+                    arguments.add(arguments.getFirst());
+                    arguments.add(distance);
+                }
+            }
+            LLVMValueRef result = callIntrinsic(intrinsic, type, arguments.toArray(LLVMValueRef[]::new));
+            // Bit counts of longs are still ints
+            if (Type.getReturnType(descriptor).getSort() == Type.INT && LLVMGetIntTypeWidth(type) == 64) {
+                result = LLVMBuildTrunc(builder, result, LLVMInt32TypeInContext(context), name);
+            }
+            stack.push(result);
+            return true;
+        }
+
+        /**
+         * Computes {@link Math#min(double, double)} or {@link Math#max(double, double)}, propagating NaN and ordering -0.0 before 0.0.
+         * <p>
+         * llvm.minimum and llvm.maximum match these semantics but cannot be selected on every target.
+         * Fast-math code ignoring both NaN and the sign of zero uses llvm.minnum and llvm.maxnum instead.
+         */
+        private void floatMinMax(boolean max) {
+            LLVMValueRef right = stack.pop();
+            LLVMValueRef left = stack.pop();
+            final LLVMTypeRef type = LLVMTypeOf(left);
+            if (fastMath != null && List.of(fastMath.split(" ")).containsAll(List.of("nnan", "nsz"))) {
+                stack.push(callIntrinsic(max ? "llvm.maxnum" : "llvm.minnum", type, left, right));
+                return;
+            }
+            LLVMTypeRef intType = LLVMIntTypeInContext(context, LLVMGetTypeKind(scalarType(type)) == LLVMFloatTypeKind ? 32 : 64);
+            if (LLVMGetTypeKind(type) == LLVMVectorTypeKind) intType = LLVMVectorType(intType, LLVMGetVectorSize(type));
+            // Equal values only differ by the sign of zero, decided by combining their bits
+            LLVMValueRef leftBits = LLVMBuildBitCast(builder, left, intType, "bits");
+            LLVMValueRef rightBits = LLVMBuildBitCast(builder, right, intType, "bits");
+            LLVMValueRef equalBits = max ? LLVMBuildAnd(builder, leftBits, rightBits, "equal") : LLVMBuildOr(builder, leftBits, rightBits, "equal");
+            LLVMValueRef equal = LLVMBuildBitCast(builder, equalBits, type, "equal");
+
+            LLVMValueRef leftFirst = floatCompare(max ? LLVMRealOGT : LLVMRealOLT, left, right, "left");
+            LLVMValueRef rightFirst = floatCompare(max ? LLVMRealOLT : LLVMRealOGT, left, right, "right");
+            LLVMValueRef result = LLVMBuildSelect(builder, rightFirst, right, equal, "result");
+            result = LLVMBuildSelect(builder, leftFirst, left, result, "result");
+            LLVMValueRef unordered = floatCompare(LLVMRealUNO, left, right, "unordered");
+            stack.push(LLVMBuildSelect(builder, unordered, LLVMBuildFAdd(builder, left, right, "NaN"), result, max ? "max" : "min"));
+        }
+
+        /**
+         * Lowers {@link java.lang.foreign.MemorySegment} accesses to raw loads and stores, without bounds checks.
+         */
+        private void visitSegmentInsn(String name, String descriptor) {
+            switch (name) {
+                case "byteSize" -> stack.push(LLVMBuildExtractValue(builder, stack.pop(), 1, "byteSize"));
+                case "get", "getAtIndex" -> {
+                    final Type elementType = Type.getReturnType(descriptor);
+                    LLVMValueRef offset = stack.pop();
+                    stack.pop(); // Layout
+                    LLVMValueRef segment = stack.pop();
+                    LLVMValueRef pointer = elementPointer(segment, elementType, offset, name.equals("getAtIndex"));
+                    LLVMValueRef value = LLVMBuildLoad2(builder, memoryType(elementType), pointer, name);
+                    stack.push(fromMemory(value, elementType));
+                }
+                case "set", "setAtIndex" -> {
+                    final Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+                    final Type elementType = argumentTypes[argumentTypes.length - 1];
+                    LLVMValueRef value = stack.pop();
+                    LLVMValueRef offset = stack.pop();
+                    stack.pop(); // Layout
+                    LLVMValueRef segment = stack.pop();
+                    LLVMValueRef pointer = elementPointer(segment, elementType, offset, name.equals("setAtIndex"));
+                    LLVMBuildStore(builder, toMemory(value, elementType), pointer);
+                }
+                default -> throw new IllegalArgumentException("Unsupported segment method: " + name + descriptor);
+            }
+        }
+
+        /**
+         * Lowers the Vector API to LLVM vectors of the length and element type of the species.
+         * <p>
+         * Masks are vectors of i1, and arrays and segments are accessed without bounds checks.
+         */
+        private void visitVectorInsn(int opcode, String owner, String name, String descriptor) {
+            final Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+            final LinkedList<LLVMValueRef> arguments = new LinkedList<>();
+            for (int i = argumentTypes.length; i > 0; i--) arguments.addFirst(stack.pop());
+            final LLVMValueRef receiver = opcode == INVOKESTATIC ? null : stack.pop();
+            final LLVMValueRef result = switch (owner) {
+                case VECTOR_SPECIES -> speciesMethod(receiver, name, arguments);
+                case VECTOR_MASK -> maskMethod(receiver, name, arguments);
+                default -> {
+                    // Masks restricting an operation are always last
+                    final boolean masked = argumentTypes.length > 0 && argumentTypes[argumentTypes.length - 1].getDescriptor().equals("L" + VECTOR_MASK + ";");
+                    final LLVMValueRef mask = masked ? arguments.removeLast() : null;
+                    yield receiver == null ? vectorFactory(name, arguments, mask) : vectorMethod(receiver, name, arguments, mask);
+                }
+            };
+            if (result == null) throw new IllegalArgumentException("Unsupported vector method: " + owner + "." + name + descriptor);
+            final Type returnType = Type.getReturnType(descriptor);
+            if (returnType.getSort() != Type.VOID) stack.push(widen(result, returnType));
+        }
+
+        private LLVMValueRef speciesMethod(LLVMValueRef species, String name, List<LLVMValueRef> arguments) {
+            final LLVMTypeRef vectorType = LLVMTypeOf(species);
+            final int length = LLVMGetVectorSize(vectorType);
+            final LLVMTypeRef intType = LLVMInt32TypeInContext(context);
+            return switch (name) {
+                case "length" -> LLVMConstInt(intType, length, 0);
+                case "elementSize" -> LLVMConstInt(intType, laneBits(vectorType), 0);
+                case "vectorBitSize" -> LLVMConstInt(intType, (long) length * laneBits(vectorType), 0);
+                case "vectorByteSize" -> LLVMConstInt(intType, (long) length * laneBits(vectorType) / 8, 0);
+                // Lengths are powers of two
+                case "loopBound" -> LLVMBuildAnd(builder, arguments.get(0), LLVMConstInt(LLVMTypeOf(arguments.get(0)), -length, 1), "loopBound");
+                case "indexInRange" -> {
+                    final LLVMValueRef offset = arguments.get(0);
+                    final LLVMValueRef[] indices = new LLVMValueRef[length];
+                    for (int i = 0; i < length; i++) indices[i] = LLVMConstInt(LLVMTypeOf(offset), i, 0);
+                    final LLVMValueRef lanes = LLVMBuildAdd(builder, splat(offset, length), LLVMConstVector(new PointerPointer<>(length).put(indices), length), "lanes");
+                    yield LLVMBuildICmp(builder, LLVMIntSLT, lanes, splat(arguments.get(1), length), "indexInRange");
+                }
+                default -> null;
+            };
+        }
+
+        private LLVMValueRef maskMethod(LLVMValueRef mask, String name, List<LLVMValueRef> arguments) {
+            // Each lane is a bit of the integer
+            final LLVMTypeRef bitsType = LLVMIntTypeInContext(context, LLVMGetVectorSize(LLVMTypeOf(mask)));
+            return switch (name) {
+                case "and" -> LLVMBuildAnd(builder, mask, arguments.get(0), "and");
+                case "or" -> LLVMBuildOr(builder, mask, arguments.get(0), "or");
+                case "not" -> LLVMBuildNot(builder, mask, "not");
+                case "laneIsSet" -> LLVMBuildExtractElement(builder, mask, arguments.get(0), "laneIsSet");
+                case "anyTrue" -> LLVMBuildICmp(builder, LLVMIntNE, LLVMBuildBitCast(builder, mask, bitsType, "bits"), LLVMConstNull(bitsType), "anyTrue");
+                case "allTrue" -> LLVMBuildICmp(builder, LLVMIntEQ, LLVMBuildBitCast(builder, mask, bitsType, "bits"), LLVMConstAllOnes(bitsType), "allTrue");
+                case "trueCount" -> {
+                    final LLVMValueRef count = callIntrinsic("llvm.ctpop", bitsType, LLVMBuildBitCast(builder, mask, bitsType, "bits"));
+                    yield LLVMBuildIntCast2(builder, count, LLVMInt32TypeInContext(context), 0, "trueCount");
+                }
+                default -> null;
+            };
+        }
+
+        private LLVMValueRef vectorFactory(String name, List<LLVMValueRef> arguments, LLVMValueRef mask) {
+            final LLVMTypeRef vectorType = LLVMTypeOf(arguments.get(0));
+            return switch (name) {
+                case "zero" -> LLVMConstNull(vectorType);
+                case "broadcast" -> splat(toLane(arguments.get(1), vectorType), LLVMGetVectorSize(vectorType));
+                case "fromArray" -> arguments.size() != 3 ? null :
+                        loadVector(vectorType, elementPointer(arguments.get(1), laneType(vectorType), arguments.get(2), true), laneBits(vectorType) / 8, mask);
+                case "fromMemorySegment" -> arguments.size() != 4 ? null :
+                        loadVector(vectorType, elementPointer(arguments.get(1), laneType(vectorType), arguments.get(2), false), 1, mask);
+                default -> null;
+            };
+        }
+
+        private LLVMValueRef vectorMethod(LLVMValueRef vector, String name, List<LLVMValueRef> arguments, LLVMValueRef mask) {
+            final LLVMTypeRef vectorType = LLVMTypeOf(vector);
+            return switch (name) {
+                case "add", "sub", "mul", "div", "min", "max", "and", "or" ->
+                        select(mask, lanewise(name.toUpperCase(Locale.ROOT), vector, operand(arguments.get(0), vectorType)), vector);
+                case "neg", "abs", "sqrt", "not" -> select(mask, lanewise(name.toUpperCase(Locale.ROOT), vector), vector);
+                case "fma" -> select(mask, fma(vector, operand(arguments.get(0), vectorType), operand(arguments.get(1), vectorType)), vector);
+                case "lanewise" -> {
+                    final String operator = operatorName(arguments.get(0));
+                    final LLVMValueRef result = switch (arguments.size()) {
+                        case 1 -> lanewise(operator, vector);
+                        case 2 -> lanewise(operator, vector, operand(arguments.get(1), vectorType));
+                        default -> operator.equals("FMA") ? fma(vector, operand(arguments.get(1), vectorType), operand(arguments.get(2), vectorType)) : null;
+                    };
+                    yield result != null ? select(mask, result, vector) : null;
+                }
+                case "reduceLanes" -> {
+                    final String operator = operatorName(arguments.get(0));
+                    // Lanes left out of the mask hold the identity of the operation
+                    final LLVMValueRef identity = splat(identity(operator, LLVMGetElementType(vectorType)), LLVMGetVectorSize(vectorType));
+                    yield reduce(operator, select(mask, vector, identity));
+                }
+                case "compare" -> select(mask, compare(operatorName(arguments.get(0)), vector, operand(arguments.get(1), vectorType)), null);
+                case "eq", "lt" -> compare(name.toUpperCase(Locale.ROOT), vector, operand(arguments.get(0), vectorType));
+                case "blend" -> LLVMBuildSelect(builder, mask, operand(arguments.get(0), vectorType), vector, "blend");
+                case "lane" -> LLVMBuildExtractElement(builder, vector, arguments.get(0), "lane");
+                case "withLane" -> LLVMBuildInsertElement(builder, vector, toLane(arguments.get(1), vectorType), arguments.get(0), "withLane");
+                case "length" -> LLVMConstInt(LLVMInt32TypeInContext(context), LLVMGetVectorSize(vectorType), 0);
+                case "intoArray" -> {
+                    if (arguments.size() != 2) yield null;
+                    storeVector(vector, elementPointer(arguments.get(0), laneType(vectorType), arguments.get(1), true), laneBits(vectorType) / 8, mask);
+                    yield vector;
+                }
+                case "intoMemorySegment" -> {
+                    if (arguments.size() != 3) yield null;
+                    storeVector(vector, elementPointer(arguments.get(0), laneType(vectorType), arguments.get(1), false), 1, mask);
+                    yield vector;
+                }
+                default -> null;
+            };
+        }
+
+        private LLVMValueRef lanewise(String operator, LLVMValueRef value) {
+            final LLVMTypeRef type = LLVMTypeOf(value);
+            final boolean floating = isFloating(type);
+            return switch (operator) {
+                case "NEG" -> floating ? floatNegate(value) : LLVMBuildNeg(builder, value, "NEG");
+                case "ABS" -> floating ? callIntrinsic("llvm.fabs", type, value) :
+                        callIntrinsic("llvm.abs", type, value, LLVMConstInt(LLVMInt1TypeInContext(context), 0, 0));
+                case "SQRT" -> floating ? callIntrinsic("llvm.sqrt", type, value) : null;
+                case "NOT" -> floating ? null : LLVMBuildNot(builder, value, "NOT");
+                default -> null;
+            };
+        }
+
+        /**
+         * Applies a binary operator of {@code VectorOperators} to each lane, with the same semantics as the scalar operation.
+         */
+        private LLVMValueRef lanewise(String operator, LLVMValueRef left, LLVMValueRef right) {
+            final LLVMTypeRef type = LLVMTypeOf(left);
+            final boolean floating = isFloating(type);
+            if (!floating && (operator.equals("MIN") || operator.equals("MAX")))
+                return callIntrinsic(operator.equals("MIN") ? "llvm.smin" : "llvm.smax", type, left, right);
+            push(left, right);
+            switch (operator) {
+                case "ADD" -> {
+                    if (floating) floatBinary("fadd", LLVM::LLVMBuildFAdd);
+                    else binary(LLVM::LLVMBuildAdd, "ADD");
+                }
+                case "SUB" -> {
+                    if (floating) floatBinary("fsub", LLVM::LLVMBuildFSub);
+                    else binary(LLVM::LLVMBuildSub, "SUB");
+                }
+                case "MUL" -> {
+                    if (floating) floatBinary("fmul", LLVM::LLVMBuildFMul);
+                    else binary(LLVM::LLVMBuildMul, "MUL");
+                }
+                case "DIV" -> {
+                    // Integer lanes would throw on zero
+                    if (!floating) throw new IllegalArgumentException("Integer vector division is not supported");
+                    floatBinary("fdiv", LLVM::LLVMBuildFDiv);
+                }
+                case "MIN", "MAX" -> floatMinMax(operator.equals("MAX"));
+                case "AND", "OR", "XOR" -> {
+                    if (floating) throw new IllegalArgumentException("Bitwise operator on floating-point lanes: " + operator);
+                    binary(switch (operator) {
+                        case "AND" -> LLVM::LLVMBuildAnd;
+                        case "OR" -> LLVM::LLVMBuildOr;
+                        default -> LLVM::LLVMBuildXor;
+                    }, operator);
+                }
+                default -> throw new IllegalArgumentException("Unsupported vector operator: " + operator);
+            }
+            return stack.pop();
+        }
+
+        private LLVMValueRef fma(LLVMValueRef vector, LLVMValueRef multiplier, LLVMValueRef addend) {
+            if (!isFloating(LLVMTypeOf(vector))) return null;
+            return callIntrinsic("llvm.fma", LLVMTypeOf(vector), vector, multiplier, addend);
+        }
+
+        private LLVMValueRef compare(String operator, LLVMValueRef left, LLVMValueRef right) {
+            if (isFloating(LLVMTypeOf(left))) {
+                // Only NE holds for NaN, like the scalar comparisons
+                final int predicate = switch (operator) {
+                    case "EQ" -> LLVMRealOEQ;
+                    case "NE" -> LLVMRealUNE;
+                    case "LT" -> LLVMRealOLT;
+                    case "LE" -> LLVMRealOLE;
+                    case "GT" -> LLVMRealOGT;
+                    case "GE" -> LLVMRealOGE;
+                    default -> throw new IllegalArgumentException("Unsupported comparison: " + operator);
+                };
+                return floatCompare(predicate, left, right, operator);
+            }
+            final int predicate = switch (operator) {
+                case "EQ" -> LLVMIntEQ;
+                case "NE" -> LLVMIntNE;
+                case "LT" -> LLVMIntSLT;
+                case "LE" -> LLVMIntSLE;
+                case "GT" -> LLVMIntSGT;
+                case "GE" -> LLVMIntSGE;
+                default -> throw new IllegalArgumentException("Unsupported comparison: " + operator);
+            };
+            return LLVMBuildICmp(builder, predicate, left, right, operator);
+        }
+
+        /**
+         * Reduces the lanes by halves, the order of a reduction being unspecified by the Vector API.
+         */
+        private LLVMValueRef reduce(String operator, LLVMValueRef vector) {
+            for (int length = LLVMGetVectorSize(LLVMTypeOf(vector)); length > 1; length /= 2) {
+                final LLVMValueRef lower = LLVMBuildShuffleVector(builder, vector, LLVMGetUndef(LLVMTypeOf(vector)), lanes(0, length / 2), "lower");
+                final LLVMValueRef upper = LLVMBuildShuffleVector(builder, vector, LLVMGetUndef(LLVMTypeOf(vector)), lanes(length / 2, length / 2), "upper");
+                vector = lanewise(operator, lower, upper);
+            }
+            return LLVMBuildExtractElement(builder, vector, LLVMConstInt(LLVMInt32TypeInContext(context), 0, 0), "reduceLanes");
+        }
+
+        private LLVMValueRef identity(String operator, LLVMTypeRef laneType) {
+            if (isFloating(laneType)) {
+                return LLVMConstReal(laneType, switch (operator) {
+                    case "ADD" -> -0.0;
+                    case "MUL" -> 1.0;
+                    case "MIN" -> Double.POSITIVE_INFINITY;
+                    case "MAX" -> Double.NEGATIVE_INFINITY;
+                    default -> throw new IllegalArgumentException("Unsupported reduction: " + operator);
+                });
+            }
+            final int bits = LLVMGetIntTypeWidth(laneType);
+            return LLVMConstInt(laneType, switch (operator) {
+                case "ADD", "OR", "XOR" -> 0;
+                case "MUL" -> 1;
+                case "AND" -> -1;
+                case "MIN" -> (1L << (bits - 1)) - 1;
+                case "MAX" -> -(1L << (bits - 1));
+                default -> throw new IllegalArgumentException("Unsupported reduction: " + operator);
+            }, 1);
+        }
+
+        /**
+         * Loads a vector, only the lanes of {@code mask} if any, the others being zero.
+         */
+        private LLVMValueRef loadVector(LLVMTypeRef vectorType, LLVMValueRef pointer, int alignment, LLVMValueRef mask) {
+            pointer = LLVMBuildBitCast(builder, pointer, LLVMPointerType(vectorType, 0), "vector");
+            if (mask == null) {
+                final LLVMValueRef load = LLVMBuildLoad2(builder, vectorType, pointer, "vector");
+                LLVMSetAlignment(load, alignment);
+                return load;
+            }
+            final LLVMValueRef alignmentValue = LLVMConstInt(LLVMInt32TypeInContext(context), alignment, 0);
+            return callOverloaded("llvm.masked.load", new LLVMTypeRef[]{vectorType, LLVMTypeOf(pointer)},
+                    pointer, alignmentValue, mask, LLVMConstNull(vectorType));
+        }
+
+        private void storeVector(LLVMValueRef vector, LLVMValueRef pointer, int alignment, LLVMValueRef mask) {
+            pointer = LLVMBuildBitCast(builder, pointer, LLVMPointerType(LLVMTypeOf(vector), 0), "vector");
+            if (mask == null) {
+                LLVMSetAlignment(LLVMBuildStore(builder, vector, pointer), alignment);
+                return;
+            }
+            final LLVMValueRef alignmentValue = LLVMConstInt(LLVMInt32TypeInContext(context), alignment, 0);
+            callOverloaded("llvm.masked.store", new LLVMTypeRef[]{LLVMTypeOf(vector), LLVMTypeOf(pointer)},
+                    vector, pointer, alignmentValue, mask);
+        }
+
+        /**
+         * Selects the lanes of {@code value} in {@code mask}, the others from {@code fallback}, or false if it is null.
+         */
+        private LLVMValueRef select(LLVMValueRef mask, LLVMValueRef value, LLVMValueRef fallback) {
+            if (mask == null || value == null) return value;
+            if (fallback == null) return LLVMBuildAnd(builder, mask, value, "masked");
+            return LLVMBuildSelect(builder, mask, value, fallback, "masked");
+        }
+
+        /**
+         * Gets a vector operand, broadcasting scalars.
+         */
+        private LLVMValueRef operand(LLVMValueRef value, LLVMTypeRef vectorType) {
+            if (LLVMGetTypeKind(LLVMTypeOf(value)) == LLVMVectorTypeKind) return value;
+            return splat(toLane(value, vectorType), LLVMGetVectorSize(vectorType));
+        }
+
+        /**
+         * Converts a scalar of the JVM stack to a lane of {@code vectorType}, from a long for the bits overloads.
+         */
+        private LLVMValueRef toLane(LLVMValueRef value, LLVMTypeRef vectorType) {
+            final LLVMTypeRef laneType = LLVMGetElementType(vectorType);
+            if (isFloating(laneType)) {
+                return isFloating(LLVMTypeOf(value)) ? value : LLVMBuildSIToFP(builder, value, laneType, "lane");
+            }
+            return LLVMBuildIntCast2(builder, value, laneType, 1, "lane");
+        }
+
+        private LLVMValueRef splat(LLVMValueRef value, int length) {
+            final LLVMTypeRef vectorType = LLVMVectorType(LLVMTypeOf(value), length);
+            final LLVMValueRef zero = LLVMConstInt(LLVMInt32TypeInContext(context), 0, 0);
+            final LLVMValueRef single = LLVMBuildInsertElement(builder, LLVMGetUndef(vectorType), value, zero, "splat");
+            return LLVMBuildShuffleVector(builder, single, LLVMGetUndef(vectorType), LLVMConstNull(LLVMVectorType(LLVMInt32TypeInContext(context), length)), "splat");
+        }
+
+        private LLVMValueRef lanes(int first, int count) {
+            final LLVMValueRef[] indices = new LLVMValueRef[count];
+            for (int i = 0; i < count; i++) indices[i] = LLVMConstInt(LLVMInt32TypeInContext(context), first + i, 0);
+            return LLVMConstVector(new PointerPointer<>(count).put(indices), count);
+        }
+
+        private LLVMValueRef callIntrinsic(String name, LLVMTypeRef type, LLVMValueRef... arguments) {
+            final LLVMTypeRef[] params = Arrays.stream(arguments).map(LLVM::LLVMTypeOf).toArray(LLVMTypeRef[]::new);
+            if (fastMath != null && isFloating(type)) {
+                final String function = name + "." + typeSuffix(type);
+                final String parameters = Arrays.stream(params).map(SpeCompiler::typeName).collect(Collectors.joining(", "));
+                final String values = IntStream.range(0, params.length).mapToObj(i -> typeName(params[i]) + " %a" + i).collect(Collectors.joining(", "));
+                return fastMath("call %s %s @%s(%s)".formatted(fastMath, typeName(type), function, values), type,
+                        "declare %s @%s(%s)".formatted(typeName(type), function, parameters), arguments);
+            }
+            final LLVMTypeRef functionType = LLVMFunctionType(type, new PointerPointer<>(params.length).put(params), params.length, 0);
+            final LLVMValueRef function = intrinsic(name + "." + typeSuffix(type), functionType);
+            return LLVMBuildCall2(builder, functionType, function, new PointerPointer<>(arguments.length).put(arguments), arguments.length, "");
+        }
+
+        /**
+         * Calls an intrinsic overloaded on pointer types, letting LLVM mangle its name.
+         */
+        private LLVMValueRef callOverloaded(String name, LLVMTypeRef[] overloads, LLVMValueRef... arguments) {
+            final int id = LLVMLookupIntrinsicID(name, name.length());
+            final PointerPointer<Pointer> types = new PointerPointer<>(overloads.length).put(overloads);
+            final LLVMValueRef function = LLVMGetIntrinsicDeclaration(module, id, types, overloads.length);
+            final LLVMTypeRef functionType = LLVMIntrinsicGetType(context, id, types, overloads.length);
+            return LLVMBuildCall2(builder, functionType, function, new PointerPointer<>(arguments.length).put(arguments), arguments.length, "");
+        }
+
+        /**
+         * Pops the arguments of a call, segments and arrays being split back into their address and size.
+         */
+        private List<LLVMValueRef> popArguments(Type[] argumentTypes) {
+            final LinkedList<LLVMValueRef> arguments = new LinkedList<>();
+            for (int i = argumentTypes.length - 1; i >= 0; i--) {
+                final LLVMValueRef value = stack.pop();
+                if (isAggregate(argumentTypes[i])) {
+                    arguments.addFirst(LLVMBuildExtractValue(builder, value, 1, "size"));
+                    arguments.addFirst(LLVMBuildExtractValue(builder, value, 0, "address"));
+                } else if (isRecord(argumentTypes[i])) {
+                    for (int component = componentTypes(argumentTypes[i]).length - 1; component >= 0; component--) {
+                        arguments.addFirst(LLVMBuildExtractValue(builder, value, component, "component"));
+                    }
+                } else {
+                    arguments.addFirst(narrow(value, argumentTypes[i]));
+                }
+            }
+            return arguments;
+        }
+
+        /**
+         * Computes the address of an element of a segment or array.
+         *
+         * @param scaled true if {@code index} counts elements, false if it counts bytes
+         */
+        private LLVMValueRef elementPointer(LLVMValueRef aggregate, Type elementType, LLVMValueRef index, boolean scaled) {
+            final LLVMTypeRef memoryType = memoryType(elementType);
+            LLVMValueRef address = LLVMBuildExtractValue(builder, aggregate, 0, "address");
+            if (!scaled) {
+                PointerPointer<Pointer> indices = new PointerPointer<>(1).put(index);
+                address = LLVMBuildInBoundsGEP2(builder, LLVMInt8TypeInContext(context), address, indices, 1, "offset");
+            }
+            address = LLVMBuildBitCast(builder, address, LLVMPointerType(memoryType, 0), "pointer");
+            if (scaled) {
+                PointerPointer<Pointer> indices = new PointerPointer<>(1).put(index);
+                address = LLVMBuildInBoundsGEP2(builder, memoryType, address, indices, 1, "index");
+            }
+            return address;
+        }
+
+        @Override
+        public void visitEnd() {
+            // Close the block following the last return, and enter the code
+            if (LLVMGetBasicBlockTerminator(LLVMGetInsertBlock(builder)) == null) LLVMBuildUnreachable(builder);
+            LLVMPositionBuilderAtEnd(builder, entry);
+            LLVMBuildBr(builder, start);
+        }
+
+        private void addTarget(LabelNode node) {
+            labels.computeIfAbsent(node.getLabel(), label -> LLVMAppendBasicBlockInContext(context, function, "label"));
+        }
+
+        /**
+         * Saves the stack before jumping to {@code label}, where it will be reloaded.
+         */
+        private void jump(Label label) {
+            final List<LLVMTypeRef> types = new ArrayList<>(stack.size());
+            final Iterator<LLVMValueRef> iterator = stack.descendingIterator();
+            for (int i = 0; iterator.hasNext(); i++) {
+                final LLVMValueRef value = iterator.next();
+                final LLVMTypeRef type = LLVMTypeOf(value);
+                LLVMBuildStore(builder, value, stackVariable(i, type));
+                types.add(type);
             }
+            labelStacks.putIfAbsent(label, types);
         }
+
+        /**
+         * Returns early if the function called last set {@code status}, continuing in a fresh block otherwise.
+         */
+        private void returnIfThrown(LLVMValueRef status) {
+            final LLVMValueRef value = LLVMBuildLoad2(builder, LLVMInt32TypeInContext(context), status, "status");
+            final LLVMValueRef isThrown = LLVMBuildICmp(builder, LLVMIntNE, value, LLVMConstNull(LLVMInt32TypeInContext(context)), "thrown");
+            final LLVMBasicBlockRef next = LLVMAppendBasicBlockInContext(context, function, "returned");
+            LLVMBuildCondBr(builder, isThrown, thrown(), next);
+            LLVMPositionBuilderAtEnd(builder, next);
+        }
+
+        /**
+         * Gets the block returning once the status has been set, the caller discarding the result.
+         */
+        private LLVMBasicBlockRef thrown() {
+            if (thrown == null) {
+                final LLVMBasicBlockRef current = LLVMGetInsertBlock(builder);
+                thrown = LLVMAppendBasicBlockInContext(context, function, "thrown");
+                LLVMPositionBuilderAtEnd(builder, thrown);
+                if (LLVMGetTypeKind(returnType) == LLVMVoidTypeKind) LLVMBuildRetVoid(builder);
+                else LLVMBuildRet(builder, LLVMConstNull(returnType));
+                LLVMPositionBuilderAtEnd(builder, current);
+            }
+            return thrown;
+        }
+
+        /**
+         * Continues in a fresh block after a terminator, code appended there is never executed.
+         */
+        private void unreachable() {
+            stack.clear();
+            LLVMPositionBuilderAtEnd(builder, LLVMAppendBasicBlockInContext(context, function, "unreachable"));
+        }
+
+        private LLVMValueRef variable(int index, LLVMTypeRef type) {
+            return variables.computeIfAbsent(new Slot(index, type), slot -> alloca(type, "variable"));
+        }
+
+        private LLVMValueRef stackVariable(int index, LLVMTypeRef type) {
+            return stackVariables.computeIfAbsent(new Slot(index, type), slot -> alloca(type, "stack"));
+        }
+
+        private LLVMValueRef alloca(LLVMTypeRef type, String name) {
+            final LLVMBasicBlockRef current = LLVMGetInsertBlock(builder);
+            LLVMPositionBuilderAtEnd(builder, entry);
+            final LLVMValueRef alloca = LLVMBuildAlloca(builder, type, name);
+            LLVMPositionBuilderAtEnd(builder, current);
+            return alloca;
+        }
+    }
+
+    private record Slot(int index, LLVMTypeRef type) {
+    }
+
+    @FunctionalInterface
+    private interface BinaryBuilder {
+        LLVMValueRef build(LLVMBuilderRef builder, LLVMValueRef left, LLVMValueRef right, String name);
+    }
+
+    /**
+     * Gets if {@code value} takes two slots of the JVM stack.
+     */
+    private static boolean isWide(LLVMValueRef value) {
+        final LLVMTypeRef type = LLVMTypeOf(value);
+        return LLVMGetTypeKind(type) == LLVMDoubleTypeKind ||
+                (LLVMGetTypeKind(type) == LLVMIntegerTypeKind && LLVMGetIntTypeWidth(type) == 64);
+    }
+
+    /**
+     * Gets the fast-math flags enabled by {@link FastMath} on the method {@code node} or its class, null if none.
+     */
+    private String fastMathFlags(MethodNode node) {
+        FastMath fastMath = Arrays.stream(type.getDeclaredMethods())
+                .filter(method -> method.getName().equals(node.name) && Type.getMethodDescriptor(method).equals(node.desc))
+                .map(method -> method.getAnnotation(FastMath.class))
+                .filter(Objects::nonNull).findFirst().orElse(null);
+        if (fastMath == null) fastMath = type.getAnnotation(FastMath.class);
+        if (fastMath == null || fastMath.value().length == 0) return null;
+        return Arrays.stream(fastMath.value()).distinct().sorted()
+                .map(flag -> flag.name().toLowerCase(Locale.ROOT))
+                .collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Gets a function returning the result of {@code instruction}, which carries fast-math flags and reads
+     * the parameters as {@code %a0, %a1...}.
+     * <p>
+     * The C API cannot set fast-math flags, the function is parsed from textual IR instead and inlined by every pipeline.
+     *
+     * @param declaration the declaration of the intrinsic called by {@code instruction}, null if none
+     */
+    private LLVMValueRef fastMathFunction(String instruction, LLVMTypeRef returnType, LLVMTypeRef[] paramTypes, @Nullable String declaration) {
+        final String params = IntStream.range(0, paramTypes.length)
+                .mapToObj(i -> typeName(paramTypes[i]) + " %a" + i)
+                .collect(Collectors.joining(", "));
+        final String signature = typeName(returnType) + " (" + params + ") " + instruction;
+        LLVMValueRef function = fastMathFunctions.get(signature);
+        if (function != null) return function;
+
+        final String name = "spe.fastmath." + fastMathFunctions.size();
+        final String ir = (declaration != null ? declaration + "\n" : "") + """
+                define %1$s @%2$s(%3$s) alwaysinline {
+                  %%result = %4$s
+                  ret %1$s %%result
+                }
+                """.formatted(typeName(returnType), name, params, instruction);
+        final LLVMMemoryBufferRef buffer = LLVMCreateMemoryBufferWithMemoryRangeCopy(ir, ir.length(), name);
+        final LLVMModuleRef helper = new LLVMModuleRef();
+        final BytePointer error = new BytePointer();
+        if (LLVMParseIRInContext(context, buffer, helper, error) != 0) {
+            final String message = error.getString();
+            LLVMDisposeMessage(error);
+            throw new IllegalStateException("Invalid fast-math function " + signature + ": " + message);
+        }
+        if (LLVMLinkModules2(module, helper) != 0) throw new IllegalStateException("Failed to link " + name);
+        // Defined externally to be linked, then hidden from other modules
+        function = LLVMGetNamedFunction(module, name);
+        LLVMSetLinkage(function, LLVMInternalLinkage);
+        fastMathFunctions.put(signature, function);
+        return function;
     }
 
-    private static LLVMTypeRef jvmTypeToLLVM(Type type) {
+    private static String typeName(LLVMTypeRef type) {
+        final BytePointer name = LLVMPrintTypeToString(type);
+        try {
+            return name.getString();
+        } finally {
+            LLVMDisposeMessage(name);
+        }
+    }
+
+    private LLVMValueRef intrinsic(String name, LLVMTypeRef type) {
+        final LLVMValueRef function = LLVMGetNamedFunction(module, name);
+        return function != null ? function : LLVMAddFunction(module, name, type);
+    }
+
+    private static String typeSuffix(LLVMTypeRef type) {
+        return switch (LLVMGetTypeKind(type)) {
+            case LLVMIntegerTypeKind -> "i" + LLVMGetIntTypeWidth(type);
+            case LLVMFloatTypeKind -> "f32";
+            case LLVMDoubleTypeKind -> "f64";
+            case LLVMVectorTypeKind -> "v" + LLVMGetVectorSize(type) + typeSuffix(LLVMGetElementType(type));
+            default -> throw new IllegalArgumentException("Unsupported type kind: " + LLVMGetTypeKind(type));
+        };
+    }
+
+    /**
+     * Gets the type of the lanes of a vector, or {@code type} itself.
+     */
+    private static LLVMTypeRef scalarType(LLVMTypeRef type) {
+        return LLVMGetTypeKind(type) == LLVMVectorTypeKind ? LLVMGetElementType(type) : type;
+    }
+
+    private static boolean isFloating(LLVMTypeRef type) {
+        final int kind = LLVMGetTypeKind(scalarType(type));
+        return kind == LLVMFloatTypeKind || kind == LLVMDoubleTypeKind;
+    }
+
+    private static int laneBits(LLVMTypeRef vectorType) {
+        final LLVMTypeRef laneType = LLVMGetElementType(vectorType);
+        return switch (LLVMGetTypeKind(laneType)) {
+            case LLVMFloatTypeKind -> 32;
+            case LLVMDoubleTypeKind -> 64;
+            default -> LLVMGetIntTypeWidth(laneType);
+        };
+    }
+
+    private static Type laneType(LLVMTypeRef vectorType) {
+        return switch (LLVMGetTypeKind(LLVMGetElementType(vectorType))) {
+            case LLVMFloatTypeKind -> Type.FLOAT_TYPE;
+            case LLVMDoubleTypeKind -> Type.DOUBLE_TYPE;
+            default -> switch (laneBits(vectorType)) {
+                case 8 -> Type.BYTE_TYPE;
+                case 16 -> Type.SHORT_TYPE;
+                case 32 -> Type.INT_TYPE;
+                default -> Type.LONG_TYPE;
+            };
+        };
+    }
+
+    private static final String SEGMENT = "java/lang/foreign/MemorySegment";
+    private static final String VALUE_LAYOUT = "java/lang/foreign/ValueLayout";
+    private static final String BYTE_ORDER = "java/nio/ByteOrder";
+    private static final String VECTOR_PACKAGE = "jdk/incubator/vector/";
+    private static final String VECTOR_SPECIES = VECTOR_PACKAGE + "VectorSpecies";
+    private static final String VECTOR_MASK = VECTOR_PACKAGE + "VectorMask";
+    private static final String VECTOR_OPERATORS = VECTOR_PACKAGE + "VectorOperators";
+    // Operators of VectorOperators, pushed on the stack as their index
+    // IR names of the LLVMRealPredicate values
+    private static final List<String> REAL_PREDICATES = List.of("false", "oeq", "ogt", "oge", "olt", "ole", "one", "ord",
+            "uno", "ueq", "ugt", "uge", "ult", "ule", "une", "true");
+
+    private static final List<String> OPERATORS = List.of("ADD", "SUB", "MUL", "DIV", "MIN", "MAX", "AND", "OR", "XOR",
+            "NEG", "ABS", "SQRT", "NOT", "FMA", "EQ", "NE", "LT", "LE", "GT", "GE");
+
+    private LLVMValueRef vectorOperator(String name) {
+        final int index = OPERATORS.indexOf(name);
+        if (index < 0) throw new IllegalArgumentException("Unsupported vector operator: " + name);
+        return LLVMConstInt(LLVMInt32TypeInContext(context), index, 0);
+    }
+
+    private static String operatorName(LLVMValueRef value) {
+        if (LLVMIsAConstantInt(value) == null) throw new IllegalArgumentException("Vector operators must be constants");
+        return OPERATORS.get((int) LLVMConstIntGetZExtValue(value));
+    }
+
+    /**
+     * Gets the vector type of the species in a static final field, as chosen by the JVM for this host.
+     */
+    private LLVMTypeRef speciesType(String owner, String name) {
+        try {
+            final Class<?> ownerClass = Class.forName(Type.getObjectType(owner).getClassName(), false, type.getClassLoader());
+            final Field field = ownerClass.getDeclaredField(name);
+            if (!Modifier.isStatic(field.getModifiers()) || !Modifier.isFinal(field.getModifiers()))
+                throw new IllegalArgumentException("Species field " + name + " must be static and final");
+            field.setAccessible(true);
+            final Object species = field.get(null);
+            final Class<?> speciesClass = Class.forName(VECTOR_SPECIES.replace('/', '.'));
+            final Class<?> elementType = (Class<?>) speciesClass.getMethod("elementType").invoke(species);
+            final int length = (int) speciesClass.getMethod("length").invoke(species);
+            return LLVMVectorType(jvmTypeToLLVM(Type.getType(elementType)), length);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot read species " + owner + "." + name, e);
+        }
+    }
+
+    /**
+     * Gets the constant value of a final field of the compiled instance.
+     * <p>
+     * Arrays are read-only constants unless the implementation writes arrays of the same type,
+     * they are then copies written independently of the instance.
+     */
+    private LLVMValueRef field(String name, Type fieldType) {
+        final LLVMValueRef cached = fields.get(name);
+        if (cached != null) return cached;
+        if (instance == null)
+            throw new IllegalArgumentException("Field " + name + " can only be read when compiling an instance of " + type.getName());
+        final Object value;
+        try {
+            final Field field = type.getDeclaredField(name);
+            if (!Modifier.isFinal(field.getModifiers()))
+                throw new IllegalArgumentException("Field " + name + " must be final to be compiled as a constant");
+            field.setAccessible(true);
+            value = field.get(instance);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot read field " + name, e);
+        }
+
+        final LLVMValueRef constant;
+        if (fieldType.getSort() == Type.ARRAY) {
+            if (value == null) throw new IllegalArgumentException("Field " + name + " is null");
+            final LLVMValueRef data = constantArray(fieldType, value);
+            final LLVMValueRef global = LLVMAddGlobal(module, LLVMTypeOf(data), prefix + name + "$field");
+            LLVMSetInitializer(global, data);
+            LLVMSetLinkage(global, LLVMInternalLinkage);
+            // Storing to a constant global is undefined, arrays that may be written get a copy of their elements
+            if (!writtenArrays.contains(fieldType.getElementType())) {
+                LLVMSetGlobalConstant(global, 1);
+                LLVMSetUnnamedAddress(global, LLVMGlobalUnnamedAddr);
+            }
+            constant = arrayConstant(global, Array.getLength(value));
+        } else {
+            constant = widen(constant(jvmTypeToLLVM(fieldType), fieldType, value), fieldType);
+        }
+        fields.put(name, constant);
+        return constant;
+    }
+
+    /**
+     * Gets the global of a static field of the compiled class, initialized with its current value.
+     * <p>
+     * Final primitives are constants, other primitives live in exported globals so that their native value
+     * can be accessed by the factory. Arrays are exported along with their length, and cannot be reassigned.
+     */
+    private StaticField staticField(String name, Type fieldType) {
+        final StaticField cached = staticFields.get(name);
+        if (cached != null) return cached;
+        final Field field;
+        final Object value;
+        try {
+            field = type.getDeclaredField(name);
+            if (!Modifier.isStatic(field.getModifiers())) throw new IllegalArgumentException("Field " + name + " is not static");
+            field.setAccessible(true);
+            value = field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot read static field " + name, e);
+        }
+
+        final StaticField staticField;
+        if (fieldType.getSort() == Type.ARRAY) {
+            if (value == null) throw new IllegalArgumentException("Static field " + name + " is null");
+            final LLVMValueRef data = constantArray(fieldType, value);
+            final LLVMValueRef global = LLVMAddGlobal(module, LLVMTypeOf(data), SpeSymbols.staticSymbol(prefix, name));
+            LLVMSetInitializer(global, data);
+            final int length = Array.getLength(value);
+            final LLVMValueRef lengthGlobal = LLVMAddGlobal(module, LLVMInt32TypeInContext(context), SpeSymbols.staticLengthSymbol(prefix, name));
+            LLVMSetInitializer(lengthGlobal, LLVMConstInt(LLVMInt32TypeInContext(context), length, 0));
+            LLVMSetGlobalConstant(lengthGlobal, 1);
+            staticField = new StaticField(null, arrayConstant(global, length), false);
+        } else if (Modifier.isFinal(field.getModifiers())) {
+            staticField = new StaticField(null, widen(constant(jvmTypeToLLVM(fieldType), fieldType, value), fieldType), false);
+        } else {
+            final LLVMTypeRef memoryType = memoryType(fieldType);
+            final LLVMValueRef global = LLVMAddGlobal(module, memoryType, SpeSymbols.staticSymbol(prefix, name));
+            LLVMSetInitializer(global, constant(memoryType, fieldType, value));
+            staticField = new StaticField(global, null, Modifier.isVolatile(field.getModifiers()));
+        }
+        staticFields.put(name, staticField);
+        return staticField;
+    }
+
+    /**
+     * Gets the elements of a primitive array as a constant.
+     */
+    private LLVMValueRef constantArray(Type arrayType, Object array) {
+        jvmTypeToLLVM(arrayType); // Rejects unsupported arrays
+        final Type elementType = arrayType.getElementType();
+        final LLVMTypeRef memoryType = memoryType(elementType);
+        final int length = Array.getLength(array);
+        final LLVMValueRef[] elements = new LLVMValueRef[length];
+        for (int i = 0; i < length; i++) {
+            elements[i] = constant(memoryType, elementType, Array.get(array, i));
+        }
+        return LLVMConstArray(memoryType, new PointerPointer<>(length).put(elements), length);
+    }
+
+    /**
+     * Gets the array value whose elements are stored in {@code global}.
+     */
+    private LLVMValueRef arrayConstant(LLVMValueRef global, int length) {
+        final LLVMValueRef[] aggregate = {
+                LLVMConstBitCast(global, LLVMPointerType(LLVMInt8TypeInContext(context), 0)),
+                LLVMConstInt(LLVMInt32TypeInContext(context), length, 0)
+        };
+        return LLVMConstStructInContext(context, new PointerPointer<>(2).put(aggregate), 2, 0);
+    }
+
+    /**
+     * A static field, accessed through {@code global} if it is assignable, otherwise being {@code value}.
+     */
+    private record StaticField(LLVMValueRef global, LLVMValueRef value, boolean isVolatile) {
+    }
+
+    /**
+     * Makes a load or store sequentially consistent, like accesses of volatile fields.
+     */
+    private void atomic(LLVMValueRef access, Type type) {
+        LLVMSetOrdering(access, LLVMAtomicOrderingSequentiallyConsistent);
+        // Atomic accesses require an explicit alignment, their natural one
+        LLVMSetAlignment(access, switch (type.getSort()) {
+            case Type.BOOLEAN, Type.BYTE -> 1;
+            case Type.CHAR, Type.SHORT -> 2;
+            case Type.INT, Type.FLOAT -> 4;
+            default -> 8;
+        });
+    }
+
+    private static LLVMValueRef constant(LLVMTypeRef llvmType, Type type, Object value) {
         return switch (type.getSort()) {
-            case Type.VOID -> LLVMVoidType();
-            case Type.BOOLEAN -> LLVMInt1Type();
-            case Type.BYTE -> LLVMInt8Type();
-            case Type.CHAR, Type.SHORT -> LLVMInt16Type();
-            case Type.INT -> LLVMInt32Type();
-            case Type.LONG -> LLVMInt64Type();
-            case Type.FLOAT -> LLVMFloatType();
-            case Type.DOUBLE -> LLVMDoubleType();
+            case Type.BOOLEAN -> LLVMConstInt(llvmType, (Boolean) value ? 1 : 0, 0);
+            case Type.CHAR -> LLVMConstInt(llvmType, (Character) value, 0);
+            case Type.BYTE, Type.SHORT, Type.INT, Type.LONG -> LLVMConstInt(llvmType, ((Number) value).longValue(), 1);
+            case Type.FLOAT, Type.DOUBLE -> LLVMConstReal(llvmType, ((Number) value).doubleValue());
+            default -> throw new IllegalArgumentException("Unsupported constant type: " + type);
+        };
+    }
+
+    /**
+     * Gets the record class named {@code internalName}, or null if it is not a record.
+     */
+    private Class<?> record(String internalName) {
+        final Class<?> cached = records.get(internalName);
+        if (cached != null) return cached;
+        final Class<?> loaded;
+        try {
+            loaded = Class.forName(Type.getObjectType(internalName).getClassName(), false, type.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!loaded.isRecord()) return null;
+        records.put(internalName, loaded);
+        return loaded;
+    }
+
+    private boolean isRecord(Type type) {
+        return type.getSort() == Type.OBJECT && record(type.getInternalName()) != null;
+    }
+
+    /**
+     * Gets the types of the components of a record, which must all be primitives.
+     */
+    private Type[] componentTypes(Type recordType) {
+        return Arrays.stream(record(recordType.getInternalName()).getRecordComponents()).map(component -> {
+            if (!component.getType().isPrimitive())
+                throw new IllegalArgumentException("Records can only hold primitives: " + recordType.getClassName());
+            return Type.getType(component.getType());
+        }).toArray(Type[]::new);
+    }
+
+    /**
+     * Gets the struct a record is stored as, matching its {@link java.lang.foreign.StructLayout}.
+     */
+    private LLVMTypeRef recordMemoryType(Type recordType) {
+        final LLVMTypeRef[] elements = Arrays.stream(componentTypes(recordType)).map(this::memoryType).toArray(LLVMTypeRef[]::new);
+        return LLVMStructTypeInContext(context, new PointerPointer<>(elements.length).put(elements), elements.length, 0);
+    }
+
+    /**
+     * Gets if {@code type} is a reference represented by an address and a size.
+     */
+    private static boolean isAggregate(Type type) {
+        return type.getInternalName().equals(SEGMENT) || type.getSort() == Type.ARRAY;
+    }
+
+    /**
+     * Gets the types of the native parameters used to pass a value of {@code type}.
+     */
+    private LLVMTypeRef[] nativeTypes(Type type) {
+        if (type.getSort() == Type.ARRAY) {
+            if (type.getDimensions() != 1 || type.getElementType().getSort() == Type.BOOLEAN || type.getElementType().getSort() == Type.OBJECT)
+                throw new IllegalArgumentException("Unsupported array type: " + type);
+            return new LLVMTypeRef[]{LLVMPointerType(LLVMInt8TypeInContext(context), 0), LLVMInt32TypeInContext(context)};
+        }
+        if (type.getSort() == Type.OBJECT && type.getInternalName().equals(SEGMENT)) {
+            return new LLVMTypeRef[]{LLVMPointerType(LLVMInt8TypeInContext(context), 0), LLVMInt64TypeInContext(context)};
+        }
+        if (isRecord(type)) {
+            return Arrays.stream(componentTypes(type)).map(this::jvmTypeToLLVM).toArray(LLVMTypeRef[]::new);
+        }
+        return new LLVMTypeRef[]{jvmTypeToLLVM(type)};
+    }
+
+    private static Type layoutType(String name) {
+        return switch (name) {
+            case "JAVA_BOOLEAN" -> Type.BOOLEAN_TYPE;
+            case "JAVA_BYTE" -> Type.BYTE_TYPE;
+            case "JAVA_CHAR" -> Type.CHAR_TYPE;
+            case "JAVA_SHORT" -> Type.SHORT_TYPE;
+            case "JAVA_INT" -> Type.INT_TYPE;
+            case "JAVA_LONG" -> Type.LONG_TYPE;
+            case "JAVA_FLOAT" -> Type.FLOAT_TYPE;
+            case "JAVA_DOUBLE" -> Type.DOUBLE_TYPE;
+            default -> throw new IllegalArgumentException("Unsupported layout: " + name);
+        };
+    }
+
+    private static Type arrayElementType(int index) {
+        // Order shared by xALOAD and xASTORE, BALOAD is also used for boolean arrays which are not supported
+        return switch (index) {
+            case 0 -> Type.INT_TYPE;
+            case 1 -> Type.LONG_TYPE;
+            case 2 -> Type.FLOAT_TYPE;
+            case 3 -> Type.DOUBLE_TYPE;
+            case 5 -> Type.BYTE_TYPE;
+            case 6 -> Type.CHAR_TYPE;
+            case 7 -> Type.SHORT_TYPE;
+            default -> throw new IllegalArgumentException("Unsupported array element: " + index);
+        };
+    }
+
+    /**
+     * Gets the type used to store {@code type} in memory, booleans take a byte.
+     */
+    private LLVMTypeRef memoryType(Type type) {
+        return type.getSort() == Type.BOOLEAN ? LLVMInt8TypeInContext(context) : jvmTypeToLLVM(type);
+    }
+
+    private LLVMValueRef fromMemory(LLVMValueRef value, Type type) {
+        if (type.getSort() == Type.BOOLEAN) {
+            LLVMValueRef bool = LLVMBuildICmp(builder, LLVMIntNE, value, LLVMConstInt(LLVMInt8TypeInContext(context), 0, 0), "boolean");
+            return LLVMBuildZExt(builder, bool, LLVMInt32TypeInContext(context), "widen");
+        }
+        return widen(value, type);
+    }
+
+    private LLVMValueRef toMemory(LLVMValueRef value, Type type) {
+        if (type.getSort() == Type.BOOLEAN) return LLVMBuildTrunc(builder, value, LLVMInt8TypeInContext(context), "narrow");
+        return narrow(value, type);
+    }
+
+    private static int intPredicate(int condition) {
+        // Order shared by IFEQ..IFLE and IF_ICMPEQ..IF_ICMPLE
+        return switch (condition) {
+            case 0 -> LLVMIntEQ;
+            case 1 -> LLVMIntNE;
+            case 2 -> LLVMIntSLT;
+            case 3 -> LLVMIntSGE;
+            case 4 -> LLVMIntSGT;
+            case 5 -> LLVMIntSLE;
+            default -> throw new IllegalArgumentException("Unknown condition: " + condition);
+        };
+    }
+
+    /**
+     * Extends a value of {@code type} to its representation on the JVM stack.
+     */
+    private LLVMValueRef widen(LLVMValueRef value, Type type) {
+        return switch (type.getSort()) {
+            case Type.BOOLEAN, Type.CHAR -> LLVMBuildZExt(builder, value, LLVMInt32TypeInContext(context), "widen");
+            case Type.BYTE, Type.SHORT -> LLVMBuildSExt(builder, value, LLVMInt32TypeInContext(context), "widen");
+            default -> value;
+        };
+    }
+
+    /**
+     * Truncates a JVM stack value to {@code type}.
+     */
+    private LLVMValueRef narrow(LLVMValueRef value, Type type) {
+        return switch (type.getSort()) {
+            case Type.BOOLEAN, Type.BYTE, Type.CHAR, Type.SHORT ->
+                    LLVMBuildTrunc(builder, value, jvmTypeToLLVM(type), "narrow");
+            default -> value;
+        };
+    }
+
+    private LLVMTypeRef jvmTypeToLLVM(Type type) {
+        return switch (type.getSort()) {
+            case Type.VOID -> LLVMVoidTypeInContext(context);
+            case Type.BOOLEAN -> LLVMInt1TypeInContext(context);
+            case Type.BYTE -> LLVMInt8TypeInContext(context);
+            case Type.CHAR, Type.SHORT -> LLVMInt16TypeInContext(context);
+            case Type.INT -> LLVMInt32TypeInContext(context);
+            case Type.LONG -> LLVMInt64TypeInContext(context);
+            case Type.FLOAT -> LLVMFloatTypeInContext(context);
+            case Type.DOUBLE -> LLVMDoubleTypeInContext(context);
+            case Type.OBJECT, Type.ARRAY -> {
+                if (isRecord(type)) {
+                    final LLVMTypeRef[] elements = nativeTypes(type);
+                    yield LLVMStructTypeInContext(context, new PointerPointer<>(elements.length).put(elements), elements.length, 0);
+                }
+                if (!isAggregate(type)) throw new IllegalArgumentException("Unsupported type: " + type);
+                final LLVMTypeRef[] elements = nativeTypes(type);
+                yield LLVMStructTypeInContext(context, new PointerPointer<>(elements.length).put(elements), elements.length, 0);
+            }
             default -> throw new IllegalArgumentException("Unsupported type: " + type);
         };
     }
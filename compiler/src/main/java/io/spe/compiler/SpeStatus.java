@@ -0,0 +1,76 @@
+package io.spe.compiler;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Finds the functions reporting exceptions through a trailing {@code int *status} parameter.
+ * <p>
+ * Native code cannot throw, a function dividing integers by zero sets the status and returns early instead,
+ * for the caller to throw {@link ArithmeticException}. The status is left untouched otherwise.
+ */
+public final class SpeStatus {
+    /**
+     * Value of the status once an integer division or remainder by zero returned.
+     */
+    public static final int DIVISION_BY_ZERO = 1;
+
+    private SpeStatus() {
+    }
+
+    /**
+     * Gets the methods among {@code methods} whose compiled functions take a status.
+     */
+    public static Set<Method> reporting(Class<?> type, List<Method> methods) {
+        final ClassNode classNode = new ClassNode();
+        try {
+            new ClassReader(type.getName()).accept(classNode, ClassReader.SKIP_DEBUG);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final Set<String> reporting = reporting(classNode.methods.stream()
+                .collect(Collectors.toMap(method -> method.name + method.desc, method -> method)), classNode.name);
+        return methods.stream()
+                .filter(method -> reporting.contains(method.getName() + Type.getMethodDescriptor(method)))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Gets the methods by name and descriptor dividing integers, or calling methods of {@code owner} that do.
+     */
+    static Set<String> reporting(Map<String, MethodNode> methods, String owner) {
+        final Set<String> reporting = new HashSet<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, MethodNode> method : methods.entrySet()) {
+                if (reporting.contains(method.getKey())) continue;
+                for (AbstractInsnNode instruction : method.getValue().instructions) {
+                    final int opcode = instruction.getOpcode();
+                    if (opcode == IDIV || opcode == LDIV || opcode == IREM || opcode == LREM ||
+                            instruction instanceof MethodInsnNode call && call.owner.equals(owner) && reporting.contains(call.name + call.desc)) {
+                        reporting.add(method.getKey());
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return reporting;
+    }
+}
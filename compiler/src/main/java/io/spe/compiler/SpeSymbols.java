@@ -0,0 +1,71 @@
+package io.spe.compiler;
+
+import io.spe.JavaCallback;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Names the symbols of compiled code, for the runtime to look them up without loading LLVM.
+ */
+public final class SpeSymbols {
+    private SpeSymbols() {
+    }
+
+    /**
+     * Gets the name of the function compiled from {@code method}.
+     */
+    public static String symbol(String prefix, Method method) {
+        return prefix + method.getName();
+    }
+
+    /**
+     * Gets the name of the function looping over the argument tuples of {@code method}.
+     */
+    public static String batchSymbol(String prefix, Method method) {
+        return symbol(prefix, method) + "$batch";
+    }
+
+    /**
+     * Gets the name of the global holding the address of the upcall stub of {@code callback}.
+     */
+    public static String callbackSymbol(String prefix, Method callback) {
+        return prefix + callback.getName() + "$callback";
+    }
+
+    /**
+     * Gets the methods of {@code type} annotated with {@link JavaCallback}, checking that they can be called back.
+     */
+    public static List<Method> callbacks(Class<?> type) {
+        final List<Method> callbacks = Arrays.stream(type.getDeclaredMethods())
+                .filter(method -> method.isAnnotationPresent(JavaCallback.class))
+                .sorted(Comparator.comparing(Method::getName)).toList();
+        for (int i = 0; i < callbacks.size(); i++) {
+            final Method callback = callbacks.get(i);
+            if (!Modifier.isStatic(callback.getModifiers()))
+                throw new IllegalArgumentException("Java callbacks must be static: " + callback);
+            if (i > 0 && callbacks.get(i - 1).getName().equals(callback.getName()))
+                throw new IllegalArgumentException("Java callbacks must not be overloaded: " + callback);
+            if (!callback.getReturnType().isPrimitive() || !Arrays.stream(callback.getParameterTypes()).allMatch(Class::isPrimitive))
+                throw new IllegalArgumentException("Java callbacks only accept and return primitives: " + callback);
+        }
+        return callbacks;
+    }
+
+    /**
+     * Gets the name of the global holding the static field {@code name}, or the elements if it is an array.
+     */
+    public static String staticSymbol(String prefix, String name) {
+        return prefix + name + "$static";
+    }
+
+    /**
+     * Gets the name of the constant holding the length of the static array {@code name}.
+     */
+    public static String staticLengthSymbol(String prefix, String name) {
+        return staticSymbol(prefix, name) + "$length";
+    }
+}
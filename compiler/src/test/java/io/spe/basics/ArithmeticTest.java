@@ -0,0 +1,167 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpeTest
+public class ArithmeticTest {
+    @Test
+    public void division() {
+        Division function = Spe.compileAndCreate(Division.class, Division.Impl.class);
+        assertEquals(-3, function.divide(7, -2));
+        assertEquals(Integer.MIN_VALUE, function.divide(Integer.MIN_VALUE, -1));
+        assertEquals(1, function.remainder(7, -2));
+        assertEquals(0, function.remainder(Integer.MIN_VALUE, -1));
+        assertEquals(Long.MIN_VALUE, function.divideLong(Long.MIN_VALUE, -1));
+    }
+
+    @Test
+    public void divisionByZero() {
+        Division function = Spe.compileAndCreate(Division.class, Division.Impl.class);
+        assertEquals("/ by zero", assertThrows(ArithmeticException.class, () -> function.divide(7, 0)).getMessage());
+        assertThrows(ArithmeticException.class, () -> function.remainder(7, 0));
+        assertThrows(ArithmeticException.class, () -> function.divideLong(7, 0));
+        // The status is cleared once thrown
+        assertEquals(-3, function.divide(7, -2));
+
+        // Reported through the helper dividing
+        Mean mean = Spe.compileAndCreate(Mean.class, Mean.Impl.class);
+        assertEquals(4, mean.mean(12, 3));
+        assertThrows(ArithmeticException.class, () -> mean.mean(12, 0));
+    }
+
+    @Test
+    public void hash() {
+        Hash function = Spe.compileAndCreate(Hash.class, Hash.Impl.class);
+        Hash java = new Hash.Impl();
+        for (long value : new long[]{0, 1, -1, 42, Long.MIN_VALUE, Long.MAX_VALUE, 0x123456789ABCDEFL}) {
+            assertEquals(java.mix(value), function.mix(value));
+        }
+    }
+
+    @Test
+    public void conversions() {
+        Conversions function = Spe.compileAndCreate(Conversions.class, Conversions.Impl.class);
+        assertEquals(0, function.toInt(Float.NaN));
+        assertEquals(Integer.MAX_VALUE, function.toInt(1e20f));
+        assertEquals(Integer.MIN_VALUE, function.toInt(Float.NEGATIVE_INFINITY));
+        assertEquals(-2, function.toInt(-2.9f));
+        assertEquals(Long.MAX_VALUE, function.toLong(Double.POSITIVE_INFINITY));
+        assertEquals((byte) 300, function.toByte(300));
+    }
+
+    @Test
+    public void comparisons() {
+        Comparisons function = Spe.compileAndCreate(Comparisons.class, Comparisons.Impl.class);
+        assertEquals(1, function.compare(1.0, 0.5));
+        assertEquals(-1, function.compare(-1.0, 0.5));
+        assertEquals(0, function.compare(0.0, -0.0));
+        assertEquals(1, function.compare(Double.NaN, 0.0));
+        assertEquals(-1, function.compareLess(Float.NaN, 0.0f));
+    }
+
+    public interface Division {
+        int divide(int a, int b);
+
+        int remainder(int a, int b);
+
+        long divideLong(long a, long b);
+
+        class Impl implements Division {
+            @Override
+            public int divide(int a, int b) {
+                return a / b;
+            }
+
+            @Override
+            public int remainder(int a, int b) {
+                return a % b;
+            }
+
+            @Override
+            public long divideLong(long a, long b) {
+                return a / b;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Mean {
+        int mean(int sum, int count);
+
+        class Impl implements Mean {
+            @Override
+            public int mean(int sum, int count) {
+                return quotient(sum, count);
+            }
+
+            private static int quotient(int dividend, int divisor) {
+                return dividend / divisor;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Hash {
+        long mix(long value);
+
+        class Impl implements Hash {
+            @Override
+            public long mix(long value) {
+                value ^= value >>> 33;
+                value *= 0xff51afd7ed558ccdL;
+                value ^= value >>> 33;
+                value *= 0xc4ceb9fe1a85ec53L;
+                value ^= value >>> 33;
+                return value;
+            }
+        }
+    }
+
+    public interface Conversions {
+        int toInt(float value);
+
+        long toLong(double value);
+
+        byte toByte(int value);
+
+        class Impl implements Conversions {
+            @Override
+            public int toInt(float value) {
+                return (int) value;
+            }
+
+            @Override
+            public long toLong(double value) {
+                return (long) value;
+            }
+
+            @Override
+            public byte toByte(int value) {
+                return (byte) value;
+            }
+        }
+    }
+
+    public interface Comparisons {
+        int compare(double a, double b);
+
+        int compareLess(float a, float b);
+
+        class Impl implements Comparisons {
+            @Override
+            public int compare(double a, double b) {
+                return a > b ? 1 : a == b ? 0 : a < b ? -1 : 1;
+            }
+
+            @Override
+            public int compareLess(float a, float b) {
+                return a < b ? -1 : a == b ? 0 : a > b ? 1 : -1;
+            }
+        }
+    }
+}
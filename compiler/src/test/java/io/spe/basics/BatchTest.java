@@ -0,0 +1,55 @@
+package io.spe.basics;
+
+import io.spe.Batched;
+import io.spe.Spe;
+import io.spe.SpeBatch;
+import io.spe.SpeFactory;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.MemorySession;
+
+import static java.lang.foreign.ValueLayout.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpeTest
+public class BatchTest {
+    @Test
+    public void batch() {
+        SpeFactory<Mix> factory = Spe.compile(Mix.class, Mix.Impl.class);
+        SpeBatch batch = factory.batch("mix");
+        assertEquals(8, batch.inputLayout().byteSize());
+        try (MemorySession session = MemorySession.openConfined()) {
+            MemorySegment input = MemorySegment.allocateNative(batch.inputLayout().byteSize() * 100, session);
+            MemorySegment output = MemorySegment.allocateNative(batch.outputLayout().byteSize() * 100, session);
+            for (int i = 0; i < 100; i++) {
+                MemorySegment tuple = input.asSlice(i * batch.inputLayout().byteSize());
+                tuple.set(JAVA_BYTE, 0, (byte) i);
+                tuple.set(JAVA_INT, 4, i * 3);
+            }
+            batch.invoke(input, output, 100);
+            Mix function = new Mix.Impl();
+            for (int i = 0; i < 100; i++) {
+                assertEquals(function.mix((byte) i, i * 3), output.getAtIndex(JAVA_INT, i));
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> batch.invoke(input, output, 101));
+        }
+        assertThrows(IllegalArgumentException.class, () -> factory.batch("unknown"));
+        factory.free();
+    }
+
+    @FunctionalInterface
+    public interface Mix {
+        @Batched
+        int mix(byte a, int b);
+
+        class Impl implements Mix {
+            @Override
+            public int mix(byte a, int b) {
+                return a * b + a;
+            }
+        }
+    }
+}
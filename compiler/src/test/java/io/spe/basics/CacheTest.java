@@ -0,0 +1,121 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.SpeFactory;
+import io.spe.SpeOptions;
+import io.spe.api.SpeTest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpeTest
+public class CacheTest {
+    private static final String PROPERTY = "spe.cache";
+
+    @Test
+    public void store(@TempDir Path directory) throws IOException {
+        System.setProperty(PROPERTY, directory.toString());
+        try {
+            final SpeFactory<Square> factory = Spe.compile(Square.class, Square.Impl.class);
+            assertEquals(49, factory.create().square(7));
+            factory.free();
+            final List<Path> entries = entries(directory);
+            // A single object file, no temporary file left behind
+            assertEquals(1, entries.size());
+            assertTrue(entries.get(0).getFileName().toString().endsWith(".o"));
+        } finally {
+            System.clearProperty(PROPERTY);
+        }
+    }
+
+    @Test
+    public void hit(@TempDir Path directory) throws IOException {
+        final Path cache = directory.resolve("cache");
+        System.setProperty(PROPERTY, cache.toString());
+        try {
+            final List<String> missed = phases(directory.resolve("miss.jfr"), () -> {
+                final SpeFactory<Square> first = Spe.compile(Square.class, Square.Impl.class);
+                assertEquals(49, first.create().square(7));
+                first.free();
+            });
+            assertTrue(missed.containsAll(List.of("Translation", "Optimization")), missed::toString);
+            final Path entry = entries(cache).get(0);
+            // Freed, so loaded again from the cache, a miss would store the object file again
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(0));
+            final List<String> hit = phases(directory.resolve("hit.jfr"), () -> {
+                final SpeFactory<Square> second = Spe.compile(Square.class, Square.Impl.class);
+                assertEquals(81, second.create().square(9));
+                second.free();
+            });
+            assertFalse(hit.contains("Translation"), hit::toString);
+            assertFalse(hit.contains("Optimization"), hit::toString);
+            assertTrue(hit.contains("Linking"), hit::toString);
+            assertEquals(FileTime.fromMillis(0), Files.getLastModifiedTime(entry));
+            assertEquals(List.of(entry), entries(cache));
+        } finally {
+            System.clearProperty(PROPERTY);
+        }
+    }
+
+    @Test
+    public void optimizationLevel(@TempDir Path directory) throws IOException {
+        System.setProperty(PROPERTY, directory.toString());
+        try {
+            for (SpeOptions.OptimizationLevel level : List.of(SpeOptions.OptimizationLevel.O1, SpeOptions.OptimizationLevel.O2)) {
+                final SpeOptions options = SpeOptions.builder().optimizationLevel(level).build();
+                final SpeFactory<Square> factory = Spe.compile(Square.class, Square.Impl.class, options);
+                assertEquals(4, factory.create().square(2));
+                factory.free();
+            }
+            // One entry per key
+            assertEquals(2, entries(directory).size());
+        } finally {
+            System.clearProperty(PROPERTY);
+        }
+    }
+
+    /**
+     * Runs {@code body} while recording the compile phases of {@link Square.Impl}.
+     */
+    private static List<String> phases(Path file, Runnable body) throws IOException {
+        try (Recording recording = new Recording()) {
+            recording.enable("io.spe.CompilePhase");
+            recording.start();
+            body.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getString("implementation").equals(Square.Impl.class.getName()))
+                .map(event -> event.getString("phase"))
+                .toList();
+    }
+
+    private static List<Path> entries(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Square {
+        int square(int value);
+
+        class Impl implements Square {
+            @Override
+            public int square(int value) {
+                return value * value;
+            }
+        }
+    }
+}
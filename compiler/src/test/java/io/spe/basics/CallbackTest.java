@@ -0,0 +1,65 @@
+package io.spe.basics;
+
+import io.spe.JavaCallback;
+import io.spe.Spe;
+import io.spe.SpeFactory;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpeTest
+public class CallbackTest {
+    @Test
+    public void logging() {
+        final SpeFactory<Checked> factory = Spe.compile(Checked.class, Checked.Impl.class);
+        final Checked function = factory.create();
+        Checked.Impl.logged = 0;
+        assertEquals(10, function.run(10));
+        assertEquals(0, Checked.Impl.logged);
+        assertEquals(-6, function.run(-6));
+        assertEquals(-6, Checked.Impl.logged);
+        factory.free();
+    }
+
+    @Test
+    public void fallback() {
+        final SpeFactory<Checked> factory = Spe.compile(Checked.class, Checked.Impl.class);
+        final Checked function = factory.create();
+        assertEquals(5.0, function.root(25));
+        assertEquals(600.0, function.root(-6));
+        factory.free();
+    }
+
+    public interface Checked {
+        int run(int value);
+
+        double root(double value);
+
+        class Impl implements Checked {
+            static int logged;
+
+            @Override
+            public int run(int value) {
+                if (value < 0) log(value);
+                return value;
+            }
+
+            @Override
+            public double root(double value) {
+                if (value < 0) return slowRoot(value);
+                return Math.sqrt(value);
+            }
+
+            @JavaCallback
+            private static void log(int value) {
+                logged = value;
+            }
+
+            @JavaCallback
+            private static double slowRoot(double value) {
+                return -value * 100;
+            }
+        }
+    }
+}
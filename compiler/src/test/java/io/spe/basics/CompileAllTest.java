@@ -0,0 +1,58 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.SpeFactory;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpeTest
+public class CompileAllTest {
+    @Test
+    public void compileAll() {
+        Map<Class<?>, SpeFactory<?>> factories = Spe.compileAll(Map.of(
+                Add.class, Add.Impl.class,
+                Sub.class, Sub.Impl.class,
+                LoopTest.Sum.class, LoopTest.Sum.Impl.class));
+        assertEquals(3, factories.size());
+        Add add = (Add) factories.get(Add.class).create();
+        Sub sub = (Sub) factories.get(Sub.class).create();
+        LoopTest.Sum sum = (LoopTest.Sum) factories.get(LoopTest.Sum.class).create();
+        assertEquals(5, add.apply(2, 3));
+        assertEquals(-1, sub.apply(2, 3));
+        assertEquals(4950, sum.sum(100));
+    }
+
+    @Test
+    public void mismatch() {
+        assertThrows(IllegalArgumentException.class, () -> Spe.compileAll(Map.of(Add.class, Sub.Impl.class)));
+    }
+
+    @FunctionalInterface
+    public interface Add {
+        int apply(int a, int b);
+
+        class Impl implements Add {
+            @Override
+            public int apply(int a, int b) {
+                return a + b;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Sub {
+        int apply(int a, int b);
+
+        class Impl implements Sub {
+            @Override
+            public int apply(int a, int b) {
+                return a - b;
+            }
+        }
+    }
+}
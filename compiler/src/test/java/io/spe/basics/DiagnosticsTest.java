@@ -0,0 +1,97 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.SpeFactory;
+import io.spe.SpeOptions;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpeTest
+public class DiagnosticsTest {
+    @Test
+    public void dumps(@TempDir Path directory) throws IOException {
+        final SpeOptions options = SpeOptions.builder()
+                .dump(SpeOptions.Dump.IR, directory)
+                .dump(SpeOptions.Dump.OPTIMIZED_IR, directory)
+                .dump(SpeOptions.Dump.ASSEMBLY, directory.resolve("asm"))
+                .dump(SpeOptions.Dump.OBJECT, directory)
+                .dump(SpeOptions.Dump.BYTECODE_MAP, directory)
+                .build();
+        final SpeFactory<Dumped> factory = Spe.compile(Dumped.class, Dumped.Impl.class, options);
+        assertEquals(10, factory.create().sum(4));
+        factory.free();
+
+        assertTrue(read(directory, ".ll").contains("define"));
+        assertTrue(read(directory, ".opt.ll").contains("define"));
+        assertFalse(read(directory.resolve("asm"), ".s").isEmpty());
+        assertTrue(Files.size(find(directory, ".o")) > 0);
+        final String map = read(directory, ".map");
+        assertTrue(map.contains("sum(I)I"));
+        assertTrue(map.contains("IRETURN"));
+        assertTrue(map.contains("ret i32"));
+    }
+
+    @Test
+    public void silent() {
+        final PrintStream out = System.out;
+        final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(captured));
+        try {
+            final SpeFactory<Silent> factory = Spe.compile(Silent.class, Silent.Impl.class);
+            assertEquals(-3, factory.create().negate(3));
+            factory.free();
+        } finally {
+            System.setOut(out);
+        }
+        assertEquals(0, captured.size());
+    }
+
+    private static Path find(Path directory, String extension) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            final List<Path> matching = files.filter(file -> file.getFileName().toString().endsWith(Dumped.Impl.class.getName() + extension)).toList();
+            assertEquals(1, matching.size(), () -> "Files ending with " + extension);
+            return matching.get(0);
+        }
+    }
+
+    private static String read(Path directory, String extension) throws IOException {
+        return Files.readString(find(directory, extension));
+    }
+
+    @FunctionalInterface
+    public interface Dumped {
+        int sum(int count);
+
+        class Impl implements Dumped {
+            @Override
+            public int sum(int count) {
+                int sum = 0;
+                for (int i = 1; i <= count; i++) sum += i;
+                return sum;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Silent {
+        int negate(int value);
+
+        class Impl implements Silent {
+            @Override
+            public int negate(int value) {
+                return -value;
+            }
+        }
+    }
+}
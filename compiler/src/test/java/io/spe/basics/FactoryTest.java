@@ -0,0 +1,37 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.SpeFactory;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpeTest
+public class FactoryTest {
+    @Test
+    public void free() {
+        SpeFactory<Negate> first = Spe.compile(Negate.class, Negate.Impl.class);
+        SpeFactory<Negate> second = Spe.compile(Negate.class, Negate.Impl.class);
+        Negate function = second.create();
+        first.free();
+        assertThrows(IllegalStateException.class, first::create);
+        // The code is shared and still referenced by the second factory
+        assertEquals(-5, function.negate(5));
+        assertEquals(7, second.create().negate(-7));
+        second.free();
+    }
+
+    @FunctionalInterface
+    public interface Negate {
+        int negate(int value);
+
+        class Impl implements Negate {
+            @Override
+            public int negate(int value) {
+                return 0 - value;
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.spe.basics;
+
+import io.spe.FastMath;
+import io.spe.Spe;
+import io.spe.SpeFactory;
+import io.spe.SpeOptions;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpeTest
+public class FastMathTest {
+    @Test
+    public void reduction() {
+        Series function = Spe.compileAndCreate(Series.class, Series.Impl.class);
+        Series java = new Series.Impl();
+        for (int n : new int[]{0, 1, 7, 100, 10_000}) {
+            final double expected = java.sum(0.25, n);
+            assertEquals(expected, function.sum(0.25, n), Math.abs(expected) * 1e-12);
+        }
+    }
+
+    @Test
+    public void contract() {
+        Fma function = Spe.compileAndCreate(Fma.class, Fma.Impl.class);
+        assertEquals(7f, function.fma(2f, 3f, 1f));
+        assertEquals(1.0f + 1e-7f * 3, function.fma(1e-7f, 3f, 1f), 1e-6f);
+    }
+
+    // Inputs whose product is rounded away when the multiplication and the addition are not fused
+    private static final float A = 1 + 0x1p-12f;
+    private static final float C = -(A * A);
+
+    @Test
+    public void strictByDefault() {
+        Strict function = Spe.compileAndCreate(Strict.class, Strict.Impl.class);
+        final float expected = new Strict.Impl().fma(A, A, C);
+        assertEquals(Float.floatToRawIntBits(expected), Float.floatToRawIntBits(function.fma(A, A, C)));
+    }
+
+    @Test
+    public void fused() throws IOException {
+        assumeTrue(fmaHost(), "The host has no FMA instruction");
+        Fma function = Spe.compileAndCreate(Fma.class, Fma.Impl.class);
+        assertEquals(Float.floatToRawIntBits(Math.fma(A, A, C)), Float.floatToRawIntBits(function.fma(A, A, C)));
+    }
+
+    @Test
+    public void flagged(@TempDir Path directory) throws IOException {
+        final SpeOptions options = SpeOptions.builder().dump(SpeOptions.Dump.IR, directory).build();
+        final SpeFactory<Clamp> factory = Spe.compile(Clamp.class, Clamp.Impl.class, options);
+        assertEquals(9.0, factory.create().clamp(-9, 3));
+        factory.free();
+
+        final String ir;
+        try (Stream<Path> files = Files.list(directory)) {
+            ir = Files.readString(files.filter(file -> file.toString().endsWith(Clamp.Impl.class.getName() + ".ll")).findFirst().orElseThrow());
+        }
+        assertTrue(ir.contains("fneg nnan nsz double"), ir);
+        assertTrue(ir.contains("fcmp nnan nsz olt double"), ir);
+        assertTrue(ir.contains("call nnan nsz double @llvm.sqrt.f64"), ir);
+        assertTrue(ir.contains("call nnan nsz double @llvm.maxnum.f64"), ir);
+    }
+
+    private static boolean fmaHost() throws IOException {
+        if (System.getProperty("os.arch").equals("aarch64")) return true;
+        final Path cpuInfo = Path.of("/proc/cpuinfo");
+        return Files.isReadable(cpuInfo) && Files.readString(cpuInfo).contains(" fma ");
+    }
+
+    @FunctionalInterface
+    public interface Series {
+        double sum(double x, int n);
+
+        @FastMath
+        class Impl implements Series {
+            @Override
+            public double sum(double x, int n) {
+                double sum = 0;
+                for (int i = 0; i < n; i++) {
+                    sum += x * i;
+                }
+                return sum;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Fma {
+        float fma(float a, float b, float c);
+
+        class Impl implements Fma {
+            @Override
+            @FastMath(FastMath.Flag.CONTRACT)
+            public float fma(float a, float b, float c) {
+                return a * b + c;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Strict {
+        float fma(float a, float b, float c);
+
+        class Impl implements Strict {
+            @Override
+            public float fma(float a, float b, float c) {
+                return a * b + c;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Clamp {
+        double clamp(double x, double y);
+
+        class Impl implements Clamp {
+            @Override
+            @FastMath({FastMath.Flag.NNAN, FastMath.Flag.NSZ})
+            public double clamp(double x, double y) {
+                return x < y ? Math.max(-x, Math.sqrt(y * y)) : x;
+            }
+        }
+    }
+}
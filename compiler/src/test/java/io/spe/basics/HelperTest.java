@@ -0,0 +1,115 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpeTest
+public class HelperTest {
+    @Test
+    public void staticHelper() {
+        Gcd function = Spe.compileAndCreate(Gcd.class, Gcd.Impl.class);
+        assertEquals(6, function.gcd(12, 18));
+        assertEquals(6, function.gcd(-12, 18));
+        assertEquals(7, function.gcd(7, 0));
+        assertEquals(1, function.gcd(17, 5));
+    }
+
+    @Test
+    public void privateHelpers() {
+        Norm function = Spe.compileAndCreate(Norm.class, Norm.Impl.class);
+        assertEquals(5.0, function.norm(3, 4));
+        assertEquals(0.0, function.norm(0, 0));
+        assertEquals(13.0, function.norm(-5, 12));
+    }
+
+    @Test
+    public void intrinsics() {
+        Bits function = Spe.compileAndCreate(Bits.class, Bits.Impl.class);
+        Bits java = new Bits.Impl();
+        for (int value : new int[]{0, 1, -1, 42, Integer.MIN_VALUE, Integer.MAX_VALUE}) {
+            assertEquals(java.bits(value), function.bits(value), "bits " + value);
+            assertEquals(java.clamp(value), function.clamp(value), "clamp " + value);
+        }
+        for (double value : new double[]{0.0, -0.0, 1.5, -2.5, Double.NaN}) {
+            assertEquals(java.min(value, 0.0), function.min(value, 0.0), "min " + value);
+            assertEquals(java.max(value, -0.0), function.max(value, -0.0), "max " + value);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Gcd {
+        long gcd(long a, long b);
+
+        class Impl implements Gcd {
+            @Override
+            public long gcd(long a, long b) {
+                return euclid(Math.abs(a), Math.abs(b));
+            }
+
+            private static long euclid(long a, long b) {
+                while (b != 0) {
+                    final long remainder = a % b;
+                    a = b;
+                    b = remainder;
+                }
+                return a;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Norm {
+        double norm(double x, double y);
+
+        class Impl implements Norm {
+            @Override
+            public double norm(double x, double y) {
+                return Math.sqrt(sumOfSquares(x, y));
+            }
+
+            private double sumOfSquares(double x, double y) {
+                return square(x) + square(y);
+            }
+
+            private static double square(double value) {
+                return value * value;
+            }
+        }
+    }
+
+    public interface Bits {
+        int bits(int value);
+
+        int clamp(int value);
+
+        double min(double a, double b);
+
+        double max(double a, double b);
+
+        class Impl implements Bits {
+            @Override
+            public int bits(int value) {
+                return Integer.bitCount(value) + Integer.numberOfLeadingZeros(value) +
+                        Integer.numberOfTrailingZeros(value) ^ Integer.rotateLeft(value, 7);
+            }
+
+            @Override
+            public int clamp(int value) {
+                return Math.max(-100, Math.min(100, value));
+            }
+
+            @Override
+            public double min(double a, double b) {
+                return Math.min(a, b);
+            }
+
+            @Override
+            public double max(double a, double b) {
+                return Math.max(a, b);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.SpeOptions;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpeTest
+public class LoopTest {
+    @Test
+    public void forTest() {
+        Sum function = Spe.compileAndCreate(Sum.class, Sum.Impl.class);
+        assertEquals(0, function.sum(0));
+        assertEquals(0, function.sum(1));
+        assertEquals(45, function.sum(10));
+        assertEquals(4950, function.sum(100));
+        assertEquals(0, function.sum(-5));
+    }
+
+    @Test
+    public void optimizationLevels() {
+        for (SpeOptions.OptimizationLevel level : SpeOptions.OptimizationLevel.values()) {
+            final SpeOptions options = SpeOptions.builder().optimizationLevel(level).build();
+            Sum function = Spe.compileAndCreate(Sum.class, Sum.Impl.class, options);
+            assertEquals(4950, function.sum(100), level.name());
+        }
+    }
+
+    @Test
+    public void whileTest() {
+        Power function = Spe.compileAndCreate(Power.class, Power.Impl.class);
+        assertEquals(1, function.power(2, 0));
+        assertEquals(2, function.power(2, 1));
+        assertEquals(1024, function.power(2, 10));
+        assertEquals(243, function.power(3, 5));
+    }
+
+    @Test
+    public void nestedTest() {
+        Triangle function = Spe.compileAndCreate(Triangle.class, Triangle.Impl.class);
+        assertEquals(0, function.count(0));
+        assertEquals(1, function.count(1));
+        assertEquals(55, function.count(10));
+    }
+
+    @Test
+    public void ternaryTest() {
+        Max function = Spe.compileAndCreate(Max.class, Max.Impl.class);
+        assertEquals(5, function.max(5, 2));
+        assertEquals(5, function.max(2, 5));
+        assertEquals(-1, function.max(-1, -3));
+    }
+
+    @FunctionalInterface
+    public interface Sum {
+        int sum(int n);
+
+        class Impl implements Sum {
+            @Override
+            public int sum(int n) {
+                int sum = 0;
+                for (int i = 0; i < n; i++) {
+                    sum += i;
+                }
+                return sum;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Power {
+        int power(int base, int exponent);
+
+        class Impl implements Power {
+            @Override
+            public int power(int base, int exponent) {
+                int result = 1;
+                while (exponent > 0) {
+                    result *= base;
+                    exponent--;
+                }
+                return result;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Triangle {
+        int count(int n);
+
+        class Impl implements Triangle {
+            @Override
+            public int count(int n) {
+                int count = 0;
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j <= i; j++) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Max {
+        int max(int a, int b);
+
+        class Impl implements Max {
+            @Override
+            public int max(int a, int b) {
+                return a > b ? a : b;
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.MemorySession;
+
+import static java.lang.foreign.ValueLayout.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpeTest
+public class MemoryTest {
+    @Test
+    public void segmentRead() {
+        SegmentSum function = Spe.compileAndCreate(SegmentSum.class, SegmentSum.Impl.class);
+        try (MemorySession session = MemorySession.openConfined()) {
+            MemorySegment segment = MemorySegment.allocateNative(JAVA_INT.byteSize() * 10, session);
+            for (int i = 0; i < 10; i++) segment.setAtIndex(JAVA_INT, i, i * 3);
+            assertEquals(135, function.sum(segment, 10));
+            assertEquals(0, function.sum(segment, 0));
+        }
+    }
+
+    @Test
+    public void segmentWrite() {
+        SegmentFill function = Spe.compileAndCreate(SegmentFill.class, SegmentFill.Impl.class);
+        try (MemorySession session = MemorySession.openConfined()) {
+            MemorySegment segment = MemorySegment.allocateNative(JAVA_BYTE.byteSize() * 16, session);
+            function.fill(segment, (byte) 7);
+            for (int i = 0; i < 16; i++) assertEquals(7, segment.get(JAVA_BYTE, i));
+        }
+    }
+
+    @Test
+    public void arrayRead() {
+        ArraySum function = Spe.compileAndCreate(ArraySum.class, ArraySum.Impl.class);
+        assertEquals(0, function.sum(new int[0]));
+        assertEquals(6, function.sum(new int[]{1, 2, 3}));
+        assertEquals(-96, function.sum(new int[]{-1, -100, 5}));
+    }
+
+    @Test
+    public void arrayWrite() {
+        ArrayScale function = Spe.compileAndCreate(ArrayScale.class, ArrayScale.Impl.class);
+        int[] array = {1, 2, 3, 4};
+        function.scale(array, 3);
+        assertArrayEquals(new int[]{3, 6, 9, 12}, array);
+    }
+
+    @FunctionalInterface
+    public interface SegmentSum {
+        int sum(MemorySegment segment, int count);
+
+        class Impl implements SegmentSum {
+            @Override
+            public int sum(MemorySegment segment, int count) {
+                int sum = 0;
+                for (int i = 0; i < count; i++) {
+                    sum += segment.getAtIndex(JAVA_INT, i);
+                }
+                return sum;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface SegmentFill {
+        void fill(MemorySegment segment, byte value);
+
+        class Impl implements SegmentFill {
+            @Override
+            public void fill(MemorySegment segment, byte value) {
+                for (int i = 0; i < segment.byteSize(); i++) {
+                    segment.set(JAVA_BYTE, i, value);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface ArraySum {
+        int sum(int[] array);
+
+        class Impl implements ArraySum {
+            @Override
+            public int sum(int[] array) {
+                int sum = 0;
+                for (int value : array) {
+                    sum += value;
+                }
+                return sum;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface ArrayScale {
+        void scale(int[] array, int factor);
+
+        class Impl implements ArrayScale {
+            @Override
+            public void scale(int[] array, int factor) {
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = array[i] * factor;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.SpeFactory;
+import io.spe.SpeMetricsMXBean;
+import io.spe.SpeOptions;
+import io.spe.api.SpeTest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpeTest
+public class MetricsTest {
+    @Test
+    public void counts() throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName pattern = new ObjectName("io.spe:type=Factory,interface=" + Kernel.class.getName() + ",*");
+        final SpeFactory<Kernel> factory = Spe.compile(Kernel.class, Kernel.Impl.class, SpeOptions.builder().metrics(true).build());
+        final Kernel kernel = factory.create();
+        for (int i = 0; i < 1000; i++) assertEquals(i + 1, kernel.increment(i));
+        assertEquals(1.5, kernel.half(3));
+
+        final Set<ObjectName> names = server.queryNames(pattern, null);
+        assertEquals(1, names.size());
+        final SpeMetricsMXBean metrics = JMX.newMXBeanProxy(server, names.iterator().next(), SpeMetricsMXBean.class);
+        assertEquals(Kernel.class.getName(), metrics.getInterfaceName());
+        assertEquals(1000, metrics.getCallCounts().get("increment(int)"));
+        assertEquals(1, metrics.getCallCounts().get("half(int)"));
+        final long[] histogram = metrics.getLatencyHistograms().get("increment(int)");
+        assertEquals(Long.SIZE, histogram.length);
+        assertTrue(Arrays.stream(histogram).sum() <= 1000);
+
+        factory.free();
+        assertTrue(server.queryNames(pattern, null).isEmpty());
+    }
+
+    @Test
+    public void uninstrumented() throws Exception {
+        final SpeFactory<Kernel> factory = Spe.compile(Kernel.class, Kernel.Impl.class);
+        assertFalse(factory.create().getClass().getName().endsWith("Instrumented"));
+        assertTrue(ManagementFactory.getPlatformMBeanServer().queryNames(new ObjectName("io.spe:type=Factory,interface=" + Kernel.class.getName() + ",*"), null).isEmpty());
+        factory.free();
+    }
+
+    @Test
+    public void compilePhases() throws IOException {
+        final Path file = Files.createTempFile("spe", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("io.spe.CompilePhase");
+            recording.start();
+            final SpeFactory<Recorded> factory = Spe.compile(Recorded.class, Recorded.Impl.class);
+            assertEquals(6, factory.create().twice(3));
+            factory.free();
+            recording.stop();
+            recording.dump(file);
+        }
+        final Set<String> phases = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getString("implementation").equals(Recorded.Impl.class.getName()))
+                .map(event -> event.getString("phase"))
+                .collect(Collectors.toSet());
+        Files.delete(file);
+        assertEquals(Set.of("Translation", "Optimization", "Code Generation", "Linking", "Class Generation"), phases);
+    }
+
+    public interface Kernel {
+        int increment(int value);
+
+        double half(int value);
+
+        class Impl implements Kernel {
+            @Override
+            public int increment(int value) {
+                return value + 1;
+            }
+
+            @Override
+            public double half(int value) {
+                return value / 2.0;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Recorded {
+        int twice(int value);
+
+        class Impl implements Recorded {
+            @Override
+            public int twice(int value) {
+                return value * 2;
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.SpeFactory;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.MemorySession;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpeTest
+public class ParallelTest {
+    @Test
+    public void fill() {
+        final SpeFactory<Kernel> factory = Spe.compile(Kernel.class, Kernel.Impl.class);
+        try (MemorySession session = MemorySession.openShared()) {
+            final long count = 1_000_003;
+            final MemorySegment segment = MemorySegment.allocateNative(JAVA_INT.byteSize() * count, session);
+            factory.parallelFor(0, count, 16, (kernel, start, end) -> kernel.fill(segment, start, end));
+            for (long i = 0; i < count; i += 997) assertEquals((int) i * 3, segment.getAtIndex(JAVA_INT, i));
+            assertEquals((int) (count - 1) * 3, segment.getAtIndex(JAVA_INT, count - 1));
+
+            final long sum = factory.parallelReduce(0, count, 16, (kernel, start, end) -> kernel.sum(segment, start, end), Long::sum);
+            assertEquals(3 * (count - 1) * count / 2, sum);
+        }
+        factory.free();
+    }
+
+    @Test
+    public void chunkOrder() {
+        final SpeFactory<Kernel> factory = Spe.compile(Kernel.class, Kernel.Impl.class);
+        final String chunks = factory.parallelReduce(0, 100, 8, (kernel, start, end) -> {
+            assertEquals(0, start % 8);
+            return start + "-" + end + ";";
+        }, String::concat);
+        long expected = 0;
+        for (String chunk : chunks.split(";")) {
+            final String[] bounds = chunk.split("-");
+            assertEquals(expected, Long.parseLong(bounds[0]));
+            expected = Long.parseLong(bounds[1]);
+        }
+        assertEquals(100, expected);
+        assertEquals("5-5;", factory.parallelReduce(5, 5, 8, (kernel, start, end) -> start + "-" + end + ";", String::concat));
+        assertThrows(IllegalArgumentException.class, () -> factory.parallelFor(0, 10, 0, (kernel, start, end) -> {
+        }));
+        factory.free();
+    }
+
+    public interface Kernel {
+        void fill(MemorySegment segment, long start, long end);
+
+        long sum(MemorySegment segment, long start, long end);
+
+        class Impl implements Kernel {
+            @Override
+            public void fill(MemorySegment segment, long start, long end) {
+                for (long i = start; i < end; i++) segment.setAtIndex(JAVA_INT, i, (int) i * 3);
+            }
+
+            @Override
+            public long sum(MemorySegment segment, long start, long end) {
+                long sum = 0;
+                for (long i = start; i < end; i++) sum += segment.getAtIndex(JAVA_INT, i);
+                return sum;
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.spe.basics;
+
+import io.spe.Precompile;
+import io.spe.Spe;
+import io.spe.SpeAot;
+import io.spe.SpeFactory;
+import io.spe.SpeOptions;
+import io.spe.api.SpeTest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpeTest
+public class PrecompiledTest {
+    @Test
+    public void bound(@TempDir Path directory) throws Exception {
+        SpeAot.precompile(Map.of(Kernel.class, Kernel.Impl.class), directory, SpeOptions.builder().hostCpu(false).build());
+        assertTrue(Files.exists(directory.resolve("META-INF/spe/precompiled.properties")));
+        assertTrue(Files.exists(directory.resolve("META-INF/spe/" + System.mapLibraryName("spe-precompiled"))));
+        // Bound to the library, nothing was compiled nor linked in the JIT
+        assertEquals(List.of(), phases(directory, SpeOptions.defaults()));
+    }
+
+    @Test
+    public void otherOptimizationLevel(@TempDir Path directory) throws Exception {
+        SpeAot.precompile(Map.of(Kernel.class, Kernel.Impl.class), directory, SpeOptions.builder().hostCpu(false).build());
+        // Compiled as usual rather than running code optimized differently
+        final SpeOptions options = SpeOptions.builder().optimizationLevel(SpeOptions.OptimizationLevel.O0).build();
+        assertTrue(phases(directory, options).contains("Translation"));
+    }
+
+    @Test
+    public void extractedOnce(@TempDir Path directory) throws Exception {
+        final Path output = directory.resolve("output");
+        SpeAot.precompile(Map.of(Kernel.class, Kernel.Impl.class), output, SpeOptions.builder().hostCpu(false).build());
+        final Properties manifest = new Properties();
+        try (InputStream stream = Files.newInputStream(output.resolve("META-INF/spe/precompiled.properties"))) {
+            manifest.load(stream);
+        }
+        final Path extracted = Path.of(System.getProperty("java.io.tmpdir"), "spe",
+                manifest.getProperty("digest") + "-" + System.mapLibraryName("spe-precompiled"));
+        final Path jar = jar(output, directory.resolve("first.jar"));
+        assertEquals(List.of(), phases(directory, jar.toUri().toURL(), SpeOptions.defaults()));
+        assertTrue(Files.isRegularFile(extracted));
+
+        // Another jar with the same library reuses the extracted file
+        Files.setLastModifiedTime(extracted, FileTime.fromMillis(0));
+        final Path copy = Files.copy(jar, directory.resolve("second.jar"));
+        assertEquals(List.of(), phases(directory, copy.toUri().toURL(), SpeOptions.defaults()));
+        assertEquals(FileTime.fromMillis(0), Files.getLastModifiedTime(extracted));
+    }
+
+    private static Path jar(Path directory, Path jar) throws IOException {
+        try (JarOutputStream stream = new JarOutputStream(Files.newOutputStream(jar));
+             Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                stream.putNextEntry(new JarEntry(directory.relativize(file).toString().replace(File.separatorChar, '/')));
+                Files.copy(file, stream);
+                stream.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static List<String> phases(Path directory, SpeOptions options) throws Exception {
+        return phases(directory, directory.toUri().toURL(), options);
+    }
+
+    /**
+     * Compiles {@link Kernel.Impl}, defined again by a loader seeing the library at {@code location}.
+     *
+     * @param directory where to write the recording
+     * @return the compile phases recorded meanwhile
+     */
+    private static List<String> phases(Path directory, URL location, SpeOptions options) throws Exception {
+        final URL classes = PrecompiledTest.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader = new KernelLoader(new URL[]{location, classes})) {
+            final Class<?> interfaceType = loader.loadClass(Kernel.class.getName());
+            final Class<?> implementationType = loader.loadClass(Kernel.Impl.class.getName());
+            final Path file = directory.resolve("recording.jfr");
+            final SpeFactory<?> factory;
+            try (Recording recording = new Recording()) {
+                recording.enable("io.spe.CompilePhase");
+                recording.start();
+                factory = compile(interfaceType, implementationType, options);
+                recording.stop();
+                recording.dump(file);
+            }
+            final Object kernel = factory.create();
+            final Method mix = interfaceType.getMethod("mix", int.class, int.class);
+            assertEquals(new Kernel.Impl().mix(7, 9), mix.invoke(kernel, 7, 9));
+            assertEquals(new Kernel.Impl().mix(-3, 100), mix.invoke(kernel, -3, 100));
+            factory.free();
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getString("implementation").equals(Kernel.Impl.class.getName()))
+                    .map(event -> event.getString("phase"))
+                    .toList();
+        }
+    }
+
+    @Test
+    public void notPrecompiled() {
+        final SpeFactory<Kernel> factory = Spe.compile(Kernel.class, Kernel.Impl.class);
+        assertEquals(new Kernel.Impl().mix(1, 2), factory.create().mix(1, 2));
+        factory.free();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> SpeFactory<T> compile(Class<?> interfaceType, Class<?> implementationType, SpeOptions options) {
+        return Spe.compile((Class<T>) interfaceType, (Class<? extends T>) implementationType, options);
+    }
+
+    private static final class KernelLoader extends URLClassLoader {
+        KernelLoader(URL[] urls) {
+            super(urls, PrecompiledTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(Kernel.class.getName())) return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name)) {
+                final Class<?> loaded = findLoadedClass(name);
+                return loaded != null ? loaded : findClass(name);
+            }
+        }
+    }
+
+    public interface Kernel {
+        int mix(int a, int b);
+
+        @Precompile(Kernel.class)
+        class Impl implements Kernel {
+            @Override
+            public int mix(int a, int b) {
+                int result = a;
+                for (int i = 0; i < 8; i++) result = result * 31 + (b ^ i);
+                return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpeTest
+public class RecordTest {
+    @Test
+    public void parameters() {
+        Geometry function = Spe.compileAndCreate(Geometry.class, Geometry.Impl.class);
+        assertEquals(32f, function.dot(new Vec3(1, 2, 3), new Vec3(4, 5, 6)));
+        assertEquals(0f, function.dot(new Vec3(1, 0, 0), new Vec3(0, 1, 0)));
+    }
+
+    @Test
+    public void returns() {
+        Geometry function = Spe.compileAndCreate(Geometry.class, Geometry.Impl.class);
+        assertEquals(new Vec3(11, 22, 33), function.add(new Vec3(1, 2, 3), new Vec3(10, 20, 30)));
+        assertEquals(new Vec3(8, 16, 24), function.scale(new Vec3(1, 2, 3), 2, 3));
+        assertEquals(new Vec3(1, 2, 3), function.scale(new Vec3(1, 2, 3), 2, 0));
+    }
+
+    @Test
+    public void padding() {
+        Geometry function = Spe.compileAndCreate(Geometry.class, Geometry.Impl.class);
+        assertEquals(new Quote((byte) 6, 3.0, true, 6), function.next(new Quote((byte) 5, 1.5, false, 7)));
+    }
+
+    public record Vec3(float x, float y, float z) {
+    }
+
+    public record Quote(byte venue, double price, boolean open, int size) {
+    }
+
+    public interface Geometry {
+        float dot(Vec3 a, Vec3 b);
+
+        Vec3 add(Vec3 a, Vec3 b);
+
+        Vec3 scale(Vec3 vector, float factor, int times);
+
+        Quote next(Quote quote);
+
+        class Impl implements Geometry {
+            @Override
+            public float dot(Vec3 a, Vec3 b) {
+                return a.x() * b.x() + a.y() * b.y() + a.z() * b.z();
+            }
+
+            @Override
+            public Vec3 add(Vec3 a, Vec3 b) {
+                return new Vec3(a.x() + b.x(), a.y() + b.y(), a.z() + b.z());
+            }
+
+            @Override
+            public Vec3 scale(Vec3 vector, float factor, int times) {
+                Vec3 result = vector;
+                for (int i = 0; i < times; i++) {
+                    result = multiply(result, factor);
+                }
+                return result;
+            }
+
+            private static Vec3 multiply(Vec3 vector, float factor) {
+                return new Vec3(vector.x() * factor, vector.y() * factor, vector.z() * factor);
+            }
+
+            @Override
+            public Quote next(Quote quote) {
+                return new Quote((byte) (quote.venue() + 1), quote.price() * 2, !quote.open(), quote.size() - 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.SpeDivergence;
+import io.spe.SpeFactory;
+import io.spe.SpeOptions;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpeTest
+public class ShadowTest {
+    @Test
+    public void matching() {
+        final List<SpeDivergence> divergences = new CopyOnWriteArrayList<>();
+        final SpeOptions options = SpeOptions.builder().shadow(1, divergences::add).build();
+        final SpeFactory<Counter> factory = Spe.compile(Counter.class, Counter.Impl.class, options);
+        final Counter counter = factory.create();
+        for (int i = 0; i < 100; i++) assertEquals(i * 3, counter.triple(i));
+        final int[] values = {1, 2, 3};
+        counter.negate(values);
+        assertArrayEquals(new int[]{-1, -2, -3}, values);
+        assertTrue(divergences.isEmpty(), divergences::toString);
+        factory.free();
+    }
+
+    @Test
+    public void diverging() {
+        final List<SpeDivergence> divergences = new CopyOnWriteArrayList<>();
+        final SpeOptions options = SpeOptions.builder().shadow(1, divergences::add).build();
+        final SpeFactory<Counter> factory = Spe.compile(Counter.class, Counter.Impl.class, options);
+        final Counter counter = factory.create();
+        // The native copy of the static field starts ahead of the Java one
+        factory.staticField("offset").set(JAVA_INT, 0, 10);
+        assertEquals(15, counter.shifted(5));
+        assertEquals(16, counter.shifted(6));
+        assertEquals(2, divergences.size());
+        final SpeDivergence divergence = divergences.get(1);
+        assertEquals("shifted", divergence.method().getName());
+        assertEquals(List.of(6), divergence.arguments());
+        assertEquals(6, divergence.expected());
+        assertEquals(16, divergence.actual());
+        assertEquals(2, divergence.count());
+        factory.free();
+    }
+
+    @Test
+    public void javaThrows() {
+        final List<SpeDivergence> divergences = new CopyOnWriteArrayList<>();
+        final SpeOptions options = SpeOptions.builder().shadow(1, divergences::add).build();
+        final SpeFactory<Counter> factory = Spe.compile(Counter.class, Counter.Impl.class, options);
+        final Counter counter = factory.create();
+        // Only the native code divides by a non-zero offset, the sampled call throws as Java does
+        factory.staticField("offset").set(JAVA_INT, 0, 10);
+        assertThrows(ArithmeticException.class, () -> counter.quotient(0));
+        assertTrue(divergences.isEmpty(), divergences::toString);
+        factory.free();
+    }
+
+    @Test
+    public void disabled() {
+        final SpeFactory<Counter> factory = Spe.compile(Counter.class, Counter.Impl.class);
+        final Counter counter = factory.create();
+        factory.staticField("offset").set(JAVA_INT, 0, 10);
+        assertEquals(15, counter.shifted(5));
+        assertFalse(counter.getClass().getName().endsWith("Shadowed"));
+        factory.free();
+        assertThrows(IllegalArgumentException.class, () -> SpeOptions.builder().shadow(-1, divergence -> {
+        }).build());
+    }
+
+    public interface Counter {
+        int triple(int value);
+
+        void negate(int[] values);
+
+        int shifted(int value);
+
+        int quotient(int value);
+
+        class Impl implements Counter {
+            static int offset;
+
+            @Override
+            public int triple(int value) {
+                return value * 3;
+            }
+
+            @Override
+            public void negate(int[] values) {
+                for (int i = 0; i < values.length; i++) values[i] = -values[i];
+            }
+
+            @Override
+            public int shifted(int value) {
+                return value + offset;
+            }
+
+            @Override
+            public int quotient(int value) {
+                return 100 / (value + offset);
+            }
+        }
+    }
+}
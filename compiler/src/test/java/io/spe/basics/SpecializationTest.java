@@ -0,0 +1,123 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.SpeFactory;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpeTest
+public class SpecializationTest {
+    @Test
+    public void constantFields() {
+        Scale function = Spe.compileAndCreate(Scale.class, new Scale.Impl(3, 1));
+        assertEquals(1, function.scale(0));
+        assertEquals(31, function.scale(10));
+        assertEquals(-2, function.scale(-1));
+    }
+
+    @Test
+    public void constantArray() {
+        Convolution function = Spe.compileAndCreate(Convolution.class, new Convolution.Impl(new double[]{0.25, 0.5, 0.25}));
+        assertEquals(2.0, function.convolve(1, 2, 3));
+        assertEquals(0.0, function.convolve(0, 0, 0));
+
+        Convolution identity = Spe.compileAndCreate(Convolution.class, new Convolution.Impl(new double[]{0, 1, 0}));
+        assertEquals(2.0, identity.convolve(1, 2, 3));
+    }
+
+    @Test
+    public void cachedByValues() {
+        final SpeFactory<Scale> first = Spe.compile(Scale.class, new Scale.Impl(2, 0));
+        final SpeFactory<Scale> same = Spe.compile(Scale.class, new Scale.Impl(2, 0));
+        final SpeFactory<Scale> other = Spe.compile(Scale.class, new Scale.Impl(5, 0));
+        assertSame(first.create().getClass(), same.create().getClass());
+        assertNotSame(first.create().getClass(), other.create().getClass());
+        assertEquals(20, same.create().scale(10));
+        assertEquals(50, other.create().scale(10));
+    }
+
+    @Test
+    public void writtenArray() {
+        final Histogram.Impl java = new Histogram.Impl(new int[4], new double[]{0.5, 1, 2, 4});
+        final SpeFactory<Histogram> factory = Spe.compile(Histogram.class, java);
+        final Histogram histogram = factory.create();
+        assertEquals(1, histogram.add(1));
+        assertEquals(2, histogram.add(1));
+        assertEquals(1, histogram.add(3));
+        assertEquals(4.0, histogram.weight(3));
+        // The native code writes its own copy
+        assertEquals(1, java.add(1));
+        factory.free();
+    }
+
+    @Test
+    public void classWithFields() {
+        assertThrows(IllegalArgumentException.class, () -> Spe.compile(Scale.class, Scale.Impl.class));
+    }
+
+    @FunctionalInterface
+    public interface Scale {
+        int scale(int value);
+
+        class Impl implements Scale {
+            private final int factor;
+            private final int offset;
+
+            Impl(int factor, int offset) {
+                this.factor = factor;
+                this.offset = offset;
+            }
+
+            @Override
+            public int scale(int value) {
+                return value * factor + offset;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Convolution {
+        double convolve(double left, double center, double right);
+
+        class Impl implements Convolution {
+            private final double[] kernel;
+
+            Impl(double[] kernel) {
+                this.kernel = kernel;
+            }
+
+            @Override
+            public double convolve(double left, double center, double right) {
+                return kernel[0] * left + kernel[1] * center + kernel[2] * right;
+            }
+        }
+    }
+
+    public interface Histogram {
+        int add(int bucket);
+
+        double weight(int bucket);
+
+        class Impl implements Histogram {
+            private final int[] counts;
+            private final double[] weights;
+
+            Impl(int[] counts, double[] weights) {
+                this.counts = counts;
+                this.weights = weights;
+            }
+
+            @Override
+            public int add(int bucket) {
+                return ++counts[bucket];
+            }
+
+            @Override
+            public double weight(int bucket) {
+                return weights[bucket] * counts[bucket];
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.SpeFactory;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpeTest
+public class StaticFieldTest {
+    @Test
+    public void counter() {
+        final SpeFactory<Counter> factory = Spe.compile(Counter.class, Counter.Impl.class);
+        final Counter counter = factory.create();
+        assertEquals(11, counter.increment(1));
+        assertEquals(15, counter.increment(4));
+
+        final MemorySegment segment = factory.staticField("count");
+        assertEquals(15, segment.get(JAVA_INT, 0));
+        segment.set(JAVA_INT, 0, 100);
+        assertEquals(101, counter.increment(1));
+        // The Java class keeps its own value
+        assertEquals(10, Counter.Impl.count);
+        factory.free();
+    }
+
+    @Test
+    public void volatileField() {
+        final SpeFactory<Counter> factory = Spe.compile(Counter.class, Counter.Impl.class);
+        final Counter counter = factory.create();
+        counter.add(5);
+        final MemorySegment segment = factory.staticField("total");
+        assertEquals(5, (long) JAVA_LONG.varHandle().getVolatile(segment));
+        JAVA_LONG.varHandle().getAndAdd(segment, 10L);
+        assertEquals(16, counter.add(1));
+        factory.free();
+    }
+
+    @Test
+    public void table() {
+        final SpeFactory<Lookup> factory = Spe.compile(Lookup.class, Lookup.Impl.class);
+        final Lookup lookup = factory.create();
+        assertEquals(4, lookup.get(2));
+
+        final MemorySegment table = factory.staticField("TABLE");
+        assertEquals(5 * JAVA_INT.byteSize(), table.byteSize());
+        table.setAtIndex(JAVA_INT, 2, 42);
+        assertEquals(42, lookup.get(2));
+        factory.free();
+    }
+
+    @Test
+    public void unknownField() {
+        final SpeFactory<Lookup> factory = Spe.compile(Lookup.class, Lookup.Impl.class);
+        assertThrows(IllegalArgumentException.class, () -> factory.staticField("missing"));
+        assertThrows(IllegalArgumentException.class, () -> factory.staticField("SIZE"));
+        factory.free();
+    }
+
+    @Test
+    public void shared() {
+        final SpeFactory<Sequence> first = Spe.compile(Sequence.class, Sequence.Impl.class);
+        final SpeFactory<Sequence> second = Spe.compile(Sequence.class, Sequence.Impl.class);
+        assertEquals(1, first.create().next());
+        // Identical compilations share their globals
+        assertEquals(2, second.create().next());
+        second.staticField("next").set(JAVA_INT, 0, 10);
+        assertEquals(11, first.create().next());
+        assertEquals(11, first.staticField("next").get(JAVA_INT, 0));
+        first.free();
+        assertEquals(12, second.create().next());
+        second.free();
+    }
+
+    public interface Counter {
+        int increment(int amount);
+
+        long add(long amount);
+
+        class Impl implements Counter {
+            static int count = 10;
+            static volatile long total;
+
+            @Override
+            public int increment(int amount) {
+                count += amount;
+                return count;
+            }
+
+            @Override
+            public long add(long amount) {
+                total += amount;
+                return total;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Lookup {
+        int get(int index);
+
+        class Impl implements Lookup {
+            private static final int SIZE = 5;
+            private static final int[] TABLE = {3, 1, 4, 1, 5};
+
+            @Override
+            public int get(int index) {
+                return TABLE[index % SIZE];
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Sequence {
+        int next();
+
+        class Impl implements Sequence {
+            static int next;
+
+            @Override
+            public int next() {
+                return ++next;
+            }
+        }
+    }
+}
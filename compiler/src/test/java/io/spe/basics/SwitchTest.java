@@ -0,0 +1,152 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpeTest
+public class SwitchTest {
+    @Test
+    public void table() {
+        Table function = Spe.compileAndCreate(Table.class, Table.Impl.class);
+        final Table java = new Table.Impl();
+        for (int i = -5; i < 20; i++) assertEquals(java.get(i), function.get(i));
+    }
+
+    @Test
+    public void lookup() {
+        Lookup function = Spe.compileAndCreate(Lookup.class, Lookup.Impl.class);
+        assertEquals(1, function.get(-1000));
+        assertEquals(2, function.get(7));
+        assertEquals(3, function.get(1 << 20));
+        assertEquals(4, function.get(Integer.MIN_VALUE));
+        assertEquals(0, function.get(8));
+    }
+
+    @Test
+    public void expression() {
+        Expression function = Spe.compileAndCreate(Expression.class, Expression.Impl.class);
+        final Expression java = new Expression.Impl();
+        for (int i = -20; i < 20; i++) {
+            assertEquals(java.get(i), function.get(i));
+            assertEquals(java.fallThrough(i), function.fallThrough(i));
+        }
+    }
+
+    @Test
+    public void interpreter() {
+        Interpreter function = Spe.compileAndCreate(Interpreter.class, Interpreter.Impl.class);
+        final Interpreter java = new Interpreter.Impl();
+        for (long program : new long[]{0x0123456789L, 0x3210L, 0x9999L, -1L, 0x1111111111111111L}) {
+            assertEquals(java.run(program, 1000), function.run(program, 1000));
+        }
+    }
+
+    @FunctionalInterface
+    public interface Table {
+        int get(int n);
+
+        class Impl implements Table {
+            @Override
+            public int get(int n) {
+                switch (n) {
+                    case 0:
+                        return 10;
+                    case 1:
+                        return 11;
+                    case 2:
+                        return 12;
+                    case 3:
+                        return 13;
+                    case 5:
+                        return 15;
+                    default:
+                        return -1;
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Lookup {
+        int get(int n);
+
+        class Impl implements Lookup {
+            @Override
+            public int get(int n) {
+                return switch (n) {
+                    case -1000 -> 1;
+                    case 7 -> 2;
+                    case 1 << 20 -> 3;
+                    case Integer.MIN_VALUE -> 4;
+                    default -> 0;
+                };
+            }
+        }
+    }
+
+    public interface Expression {
+        int get(int n);
+
+        int fallThrough(int n);
+
+        class Impl implements Expression {
+            @Override
+            public int get(int n) {
+                return 100 + switch (n & 7) {
+                    case 0, 1 -> 3;
+                    case 2 -> n * 2;
+                    case 3, 4, 5 -> {
+                        int square = n + 1;
+                        yield square * square;
+                    }
+                    default -> -n;
+                };
+            }
+
+            @Override
+            public int fallThrough(int n) {
+                int result = 0;
+                switch (n) {
+                    case 1:
+                        result += 1;
+                    case 2:
+                        result += 2;
+                        break;
+                    case 3:
+                        result += 3;
+                    default:
+                        result += 100;
+                }
+                return result;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Interpreter {
+        int run(long program, int steps);
+
+        class Impl implements Interpreter {
+            @Override
+            public int run(long program, int steps) {
+                int accumulator = 0, pc = 0;
+                for (int i = 0; i < steps; i++) {
+                    final int opcode = (int) ((program >>> (pc * 4)) & 15);
+                    switch (opcode) {
+                        case 0 -> accumulator += 1;
+                        case 1 -> accumulator *= 3;
+                        case 2 -> accumulator -= 7;
+                        case 3 -> accumulator ^= 0x55;
+                        case 9 -> pc = -1;
+                        default -> accumulator >>= 1;
+                    }
+                    pc = (pc + 1) & 15;
+                }
+                return accumulator;
+            }
+        }
+    }
+}
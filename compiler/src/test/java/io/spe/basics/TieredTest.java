@@ -0,0 +1,63 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.SpeFactory;
+import io.spe.SpeTieredFactory;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpeTest
+public class TieredTest {
+    @Test
+    public void tiered() {
+        SpeTieredFactory<Square> factory = Spe.compileTiered(Square.class, Square.Impl.class);
+        Square function = factory.create();
+        // Either implementation gives the same result
+        assertEquals(49, function.square(7));
+        SpeFactory<Square> nativeFactory = factory.nativeFactory().join();
+        // Only the native code sees its own copy of the static field
+        nativeFactory.staticField("offset").set(JAVA_INT, 0, 1000);
+        assertEquals(1049, function.square(7));
+        assertEquals(1100, factory.create().square(-10));
+        assertEquals(0, Square.Impl.offset);
+        nativeFactory.free();
+    }
+
+    @Test
+    public void packagePrivate() {
+        SpeTieredFactory<Negate> factory = Spe.compileTiered(Negate.class, Negate.Impl.class);
+        assertEquals(-3, factory.create().negate(3));
+        SpeFactory<Negate> nativeFactory = factory.nativeFactory().join();
+        assertEquals(-4, factory.create().negate(4));
+        nativeFactory.free();
+    }
+
+    @FunctionalInterface
+    interface Negate {
+        int negate(int value);
+
+        class Impl implements Negate {
+            @Override
+            public int negate(int value) {
+                return -value;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Square {
+        int square(int value);
+
+        class Impl implements Square {
+            static int offset;
+
+            @Override
+            public int square(int value) {
+                return value * value + offset;
+            }
+        }
+    }
+}
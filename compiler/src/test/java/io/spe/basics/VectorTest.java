@@ -0,0 +1,109 @@
+package io.spe.basics;
+
+import io.spe.Spe;
+import io.spe.api.SpeTest;
+import jdk.incubator.vector.*;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.MemorySession;
+import java.nio.ByteOrder;
+
+import static java.lang.foreign.ValueLayout.JAVA_FLOAT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpeTest
+public class VectorTest {
+    @Test
+    public void reduction() {
+        Kernels function = Spe.compileAndCreate(Kernels.class, Kernels.Impl.class);
+        final Kernels java = new Kernels.Impl();
+        for (int length : new int[]{0, 1, 7, 8, 17, 100}) {
+            final float[] left = new float[length], right = new float[length];
+            final int[] values = new int[length];
+            for (int i = 0; i < length; i++) {
+                left[i] = i % 13 - 6;
+                right[i] = i % 5;
+                values[i] = (i * 7919) % 1000 - 500;
+            }
+            assertEquals(java.dot(left, right), function.dot(left, right));
+            assertEquals(java.max(values), function.max(values));
+            assertEquals(java.above(left, 2), function.above(left, 2));
+        }
+    }
+
+    @Test
+    public void segment() {
+        Kernels function = Spe.compileAndCreate(Kernels.class, Kernels.Impl.class);
+        try (MemorySession session = MemorySession.openConfined()) {
+            final int length = 21;
+            MemorySegment segment = MemorySegment.allocateNative(JAVA_FLOAT.byteSize() * (length + 1), session);
+            for (int i = 0; i < length; i++) segment.setAtIndex(JAVA_FLOAT, i, i);
+            // Past the end, must be left untouched by the masked store
+            segment.setAtIndex(JAVA_FLOAT, length, -1);
+            function.scale(segment, length, 2);
+            for (int i = 0; i < length; i++) assertEquals(i * 2f, segment.getAtIndex(JAVA_FLOAT, i));
+            assertEquals(-1f, segment.getAtIndex(JAVA_FLOAT, length));
+        }
+    }
+
+    public interface Kernels {
+        float dot(float[] left, float[] right);
+
+        int max(int[] values);
+
+        int above(float[] values, float threshold);
+
+        void scale(MemorySegment segment, int length, float factor);
+
+        class Impl implements Kernels {
+            private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+            private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_256;
+
+            @Override
+            public float dot(float[] left, float[] right) {
+                FloatVector sum = FloatVector.zero(FLOATS);
+                int i = 0;
+                for (; i < FLOATS.loopBound(left.length); i += FLOATS.length()) {
+                    FloatVector a = FloatVector.fromArray(FLOATS, left, i);
+                    FloatVector b = FloatVector.fromArray(FLOATS, right, i);
+                    sum = a.fma(b, sum);
+                }
+                float result = sum.reduceLanes(VectorOperators.ADD);
+                for (; i < left.length; i++) result += left[i] * right[i];
+                return result;
+            }
+
+            @Override
+            public int max(int[] values) {
+                IntVector max = IntVector.broadcast(INTS, Integer.MIN_VALUE);
+                for (int i = 0; i < values.length; i += INTS.length()) {
+                    VectorMask<Integer> mask = INTS.indexInRange(i, values.length);
+                    max = max.lanewise(VectorOperators.MAX, IntVector.fromArray(INTS, values, i, mask), mask);
+                }
+                return max.reduceLanes(VectorOperators.MAX);
+            }
+
+            @Override
+            public int above(float[] values, float threshold) {
+                int count = 0;
+                for (int i = 0; i < values.length; i += FLOATS.length()) {
+                    VectorMask<Float> mask = FLOATS.indexInRange(i, values.length);
+                    FloatVector vector = FloatVector.fromArray(FLOATS, values, i, mask);
+                    count += vector.compare(VectorOperators.GT, threshold, mask).trueCount();
+                }
+                return count;
+            }
+
+            @Override
+            public void scale(MemorySegment segment, int length, float factor) {
+                for (int i = 0; i < length; i += FLOATS.length()) {
+                    VectorMask<Float> mask = FLOATS.indexInRange(i, length);
+                    final long offset = i * 4L;
+                    FloatVector vector = FloatVector.fromMemorySegment(FLOATS, segment, offset, ByteOrder.nativeOrder(), mask);
+                    vector.mul(factor).intoMemorySegment(segment, offset, ByteOrder.nativeOrder(), mask);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.spe.basics;
+
+import io.spe.FastMath;
+import io.spe.Spe;
+import io.spe.SpeVerification;
+import io.spe.api.SpeTest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.foreign.MemorySegment;
+import java.util.List;
+
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpeTest
+public class VerifierTest {
+    @Test
+    public void arithmetic() {
+        final SpeVerification verification = Spe.verify(Arithmetic.class, Arithmetic.Impl.class, 100_000);
+        assertTrue(verification.passed(), () -> verification.mismatches().toString());
+        assertTrue(verification.cases() > 0);
+        assertTrue(verification.skipped().isEmpty());
+    }
+
+    @Test
+    public void skipped() {
+        final SpeVerification verification = Spe.verify(Memory.class, Memory.Impl.class, 1_000);
+        assertTrue(verification.passed());
+        assertEquals(1, verification.skipped().size());
+        assertEquals("first", verification.skipped().get(0).getName());
+    }
+
+    @Test
+    public void mismatch() {
+        final SpeVerification verification = Spe.verify(Signed.class, Signed.Impl.class, 10_000);
+        assertFalse(verification.passed());
+        assertEquals(1, verification.mismatches().size());
+        final SpeVerification.Mismatch mismatch = verification.mismatches().get(0);
+        assertEquals("negate", mismatch.method().getName());
+        // Only +0.0 changes sign once the subtraction becomes a negation, any other factor shrinks to zero
+        assertEquals(List.of(0.0, 0.0), mismatch.arguments());
+        assertEquals(0.0, mismatch.expected());
+        assertEquals(-0.0, mismatch.actual());
+        assertTrue(mismatch.failures() > 0);
+        assertTrue(mismatch.failures() < verification.cases());
+    }
+
+    public interface Arithmetic {
+        int add(int a, int b);
+
+        int divide(int a, int b);
+
+        long shift(long value, int amount);
+
+        double mix(float a, double b);
+
+        long sum(int[] values);
+
+        void scale(float[] values, float factor);
+
+        int dot(Point point);
+
+        class Impl implements Arithmetic {
+            @Override
+            public int add(int a, int b) {
+                return a + b;
+            }
+
+            @Override
+            public int divide(int a, int b) {
+                return a / b;
+            }
+
+            @Override
+            public long shift(long value, int amount) {
+                return (value << amount) ^ (value >>> amount);
+            }
+
+            @Override
+            public double mix(float a, double b) {
+                return a * 0.5 + b;
+            }
+
+            @Override
+            public long sum(int[] values) {
+                long sum = 0;
+                for (int value : values) sum += value;
+                return sum;
+            }
+
+            @Override
+            public void scale(float[] values, float factor) {
+                for (int i = 0; i < values.length; i++) values[i] *= factor;
+            }
+
+            @Override
+            public int dot(Point point) {
+                return point.x() * point.x() + point.y() * point.y();
+            }
+        }
+    }
+
+    public record Point(int x, int y) {
+    }
+
+    public interface Memory {
+        int square(int value);
+
+        int first(MemorySegment segment);
+
+        class Impl implements Memory {
+            @Override
+            public int square(int value) {
+                return value * value;
+            }
+
+            @Override
+            public int first(MemorySegment segment) {
+                return segment.get(JAVA_INT, 0);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Signed {
+        double negate(double value, double factor);
+
+        class Impl implements Signed {
+            @Override
+            @FastMath(FastMath.Flag.NSZ)
+            public double negate(double value, double factor) {
+                return (0.0 - value) * factor;
+            }
+        }
+    }
+}
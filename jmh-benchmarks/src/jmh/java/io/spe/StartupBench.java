@@ -0,0 +1,27 @@
+package io.spe;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(3)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class StartupBench {
+
+    @Param({"true", "false"})
+    public boolean precompiled;
+
+    @Benchmark
+    public long compile() {
+        final SpeFactory<Mixer> factory = precompiled ?
+                Spe.compile(Mixer.class, Mixer.Precompiled.class) :
+                Spe.compile(Mixer.class, Mixer.Compiled.class);
+        final long result = factory.create().mix(42, 8);
+        factory.free();
+        return result;
+    }
+}
@@ -0,0 +1,34 @@
+package io.spe;
+
+/**
+ * Kernel of StartupBench, compiled ahead of time by the speAot task for one of its identical implementations.
+ */
+@FunctionalInterface
+public interface Mixer {
+    long mix(long seed, int rounds);
+
+    @Precompile(Mixer.class)
+    final class Precompiled implements Mixer {
+        @Override
+        public long mix(long seed, int rounds) {
+            long value = seed;
+            for (int i = 0; i < rounds; i++) {
+                value ^= value >>> 33;
+                value *= 0xff51afd7ed558ccdL;
+            }
+            return value;
+        }
+    }
+
+    final class Compiled implements Mixer {
+        @Override
+        public long mix(long seed, int rounds) {
+            long value = seed;
+            for (int i = 0; i < rounds; i++) {
+                value ^= value >>> 33;
+                value *= 0xff51afd7ed558ccdL;
+            }
+            return value;
+        }
+    }
+}